@@ -1,22 +1,37 @@
 package com.devtiro.pets.config;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Cache configuration using Caffeine
  * Caches user lookups to reduce database queries during authentication
+ * and pet search results / pet details to reduce repeated Elasticsearch queries
  */
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
+    @Value("${search.cache.maximum-size:500}")
+    private long petSearchCacheMaximumSize;
+
+    @Value("${search.cache.expire-after-write:60s}")
+    private Duration petSearchCacheExpireAfterWrite;
+
+    @Value("${pet-detail-cache.maximum-size:10000}")
+    private long petDetailCacheMaximumSize;
+
+    @Value("${pet-detail-cache.expire-after-write:10m}")
+    private Duration petDetailCacheExpireAfterWrite;
+
     /**
      * Configure cache manager with Caffeine
      * Uses in-memory caching with TTL and size limits
@@ -25,6 +40,8 @@ public class CacheConfig {
     public CacheManager cacheManager() {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager("usersByEmail");
         cacheManager.setCaffeine(caffeineCacheBuilder());
+        cacheManager.registerCustomCache("petSearches", petSearchCacheBuilder().build());
+        cacheManager.registerCustomCache("petDetails", petDetailCacheBuilder().build());
         return cacheManager;
     }
 
@@ -41,4 +58,27 @@ public class CacheConfig {
                 .expireAfterAccess(5, TimeUnit.MINUTES)
                 .recordStats(); // Enable statistics for monitoring
     }
+
+    /**
+     * Pet search result cache configuration
+     * - Maximum entries and TTL configurable via search.cache.*
+     * - Short TTL bounds staleness, writes evict affected entries explicitly
+     */
+    private Caffeine<Object, Object> petSearchCacheBuilder() {
+        return Caffeine.newBuilder()
+                .maximumSize(petSearchCacheMaximumSize)
+                .expireAfterWrite(petSearchCacheExpireAfterWrite)
+                .recordStats(); // Exposed as cache.gets/cache.evictions through /actuator/metrics
+    }
+
+    /**
+     * Pet detail cache configuration
+     * - Writes replace entries with the saved version, the TTL bounds staleness from other instances
+     */
+    private Caffeine<Object, Object> petDetailCacheBuilder() {
+        return Caffeine.newBuilder()
+                .maximumSize(petDetailCacheMaximumSize)
+                .expireAfterWrite(petDetailCacheExpireAfterWrite)
+                .recordStats(); // Exposed as cache.gets{cache=petDetails} through /actuator/metrics
+    }
 }
@@ -1,5 +1,6 @@
 package com.devtiro.pets.config;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
@@ -19,6 +20,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
 
 import java.net.URISyntaxException;
+import java.time.Duration;
 
 @Configuration
 @RequiredArgsConstructor
@@ -34,22 +36,51 @@ public class ElasticsearchConfig {
     @Value("${spring.elasticsearch.password:}")
     private String password;
 
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${server.tomcat.threads.max:200}")
+    private int tomcatMaxThreads;
+
+    @Value("${elasticsearch.client.max-connections:0}")
+    private int maxConnections;
+
+    @Value("${elasticsearch.client.max-connections-per-route:0}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${elasticsearch.client.virtual-threads-max-connections:500}")
+    private int virtualThreadsMaxConnections;
+
+    @Value("${elasticsearch.client.connection-request-timeout:5s}")
+    private Duration connectionRequestTimeout;
+
     @Bean
     public RestClient restClient() throws URISyntaxException {
         var httpHost = HttpHost.create(elasticsearchUrl);
         var builder = RestClient.builder(httpHost);
 
-        // Add authentication if credentials are provided
-        if (username != null && !username.isEmpty()) {
-            var credentialsProvider = new BasicCredentialsProvider();
-            credentialsProvider.setCredentials(
-                    AuthScope.ANY,
-                    new UsernamePasswordCredentials(username, password)
-            );
-            builder.setHttpClientConfigCallback(httpClientBuilder ->
-                    httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider)
-            );
-        }
+        // The client's defaults (30 connections, 10 per route) would make most request threads wait for a connection.
+        // On platform threads every Tomcat thread gets one; on virtual threads the thread count is no longer
+        // a bound, the pool is, and requests beyond it wait up to the connection request timeout
+        int total = maxConnections > 0 ? maxConnections
+                : virtualThreads ? virtualThreadsMaxConnections : tomcatMaxThreads;
+        int perRoute = maxConnectionsPerRoute > 0 ? maxConnectionsPerRoute : total;
+
+        builder.setHttpClientConfigCallback(httpClientBuilder -> {
+            httpClientBuilder.setMaxConnTotal(total).setMaxConnPerRoute(perRoute);
+            // Add authentication if credentials are provided
+            if (username != null && !username.isEmpty()) {
+                var credentialsProvider = new BasicCredentialsProvider();
+                credentialsProvider.setCredentials(
+                        AuthScope.ANY,
+                        new UsernamePasswordCredentials(username, password)
+                );
+                httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
+            }
+            return httpClientBuilder;
+        });
+        builder.setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder
+                .setConnectionRequestTimeout(Math.toIntExact(connectionRequestTimeout.toMillis())));
 
         return builder.build();
     }
@@ -72,5 +103,11 @@ public class ElasticsearchConfig {
         return new ElasticsearchClient(transport);
     }
 
+    // Shares the transport (and its connection pool) with the blocking client
+    @Bean
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport transport) {
+        return new ElasticsearchAsyncClient(transport);
+    }
+
 
 }
\ No newline at end of file
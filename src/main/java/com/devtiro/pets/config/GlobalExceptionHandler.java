@@ -4,6 +4,8 @@ import com.devtiro.pets.domain.dto.security.ErrorResponse;
 import com.devtiro.pets.exceptions.*;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -13,6 +15,7 @@ import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -281,6 +284,79 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLockingFailure(OptimisticLockingFailureException ex, HttpServletRequest servletRequest) {
+        log.warn("Concurrent modification: {}", ex.getMessage());
+        ErrorResponse error = ErrorResponse.builder()
+                .code("CONCURRENT_MODIFICATION")
+                .message("The resource was modified concurrently. Please reload it and try again.")
+                .status(HttpStatus.CONFLICT.value())
+                .error("CONFLICT")
+                .path(servletRequest.getRequestURI())
+                .build();
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
+    @ExceptionHandler({SearchTimeoutException.class, AsyncRequestTimeoutException.class})
+    public ResponseEntity<ErrorResponse> handleSearchTimeout(Exception ex, HttpServletRequest servletRequest) {
+        log.warn("Request timed out: {}", ex.getMessage());
+        ErrorResponse error = ErrorResponse.builder()
+                .code("REQUEST_TIMEOUT")
+                .message("The request took too long. Please try again later.")
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .error("SERVICE_UNAVAILABLE")
+                .path(servletRequest.getRequestURI())
+                .build();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<ErrorResponse> handlePasswordHashingRejected(PasswordHashingRejectedException ex, HttpServletRequest servletRequest) {
+        log.warn("Password hashing rejected: {}", servletRequest.getRequestURI());
+        ErrorResponse error = ErrorResponse.builder()
+                .code("SERVICE_BUSY")
+                .message(ex.getMessage())
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .error("SERVICE_UNAVAILABLE")
+                .path(servletRequest.getRequestURI())
+                .build();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
+
+    @ExceptionHandler(RegistrationUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleRegistrationUnavailable(RegistrationUnavailableException ex, HttpServletRequest servletRequest) {
+        log.warn("Registration unavailable: {}", ex.getMessage());
+        ErrorResponse error = ErrorResponse.builder()
+                .code("REGISTRATION_UNAVAILABLE")
+                .message(ex.getMessage())
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .error("SERVICE_UNAVAILABLE")
+                .path(servletRequest.getRequestURI())
+                .build();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "60")
+                .body(error);
+    }
+
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<ErrorResponse> handleLoginThrottled(LoginThrottledException ex, HttpServletRequest servletRequest) {
+        log.warn("Login throttled: {}", ex.getMessage());
+        ErrorResponse error = ErrorResponse.builder()
+                .code("TOO_MANY_ATTEMPTS")
+                .message(ex.getMessage())
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .error("TOO_MANY_REQUESTS")
+                .path(servletRequest.getRequestURI())
+                .build();
+        // Rounded up, Retry-After has second precision
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(error);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericException(Exception ex, HttpServletRequest servletRequest) {
         log.error("Unexpected error occurred", ex);
@@ -0,0 +1,41 @@
+package com.devtiro.pets.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.retry.RetryPolicy;
+import org.springframework.core.retry.RetryTemplate;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.Duration;
+
+/**
+ * Retry for optimistic concurrency: a save sent with a stale _seq_no/_primary_term is rejected
+ * with OptimisticLockingFailureException, and the read-modify-write is run again on the fresh document
+ * after a short, jittered exponential backoff. Once the retries are used up the conflict is answered with 409.
+ */
+@Configuration
+public class RetryConfig {
+
+    @Value("${optimistic-retry.max-retries:3}")
+    private long maxRetries;
+
+    @Value("${optimistic-retry.delay:20ms}")
+    private Duration delay;
+
+    @Value("${optimistic-retry.max-delay:200ms}")
+    private Duration maxDelay;
+
+    @Bean
+    public RetryTemplate optimisticLockRetryTemplate() {
+        return new RetryTemplate(RetryPolicy.builder()
+                .includes(OptimisticLockingFailureException.class)
+                .maxRetries(maxRetries)
+                .delay(delay)
+                .multiplier(2)
+                .jitter(delay.dividedBy(2))
+                .maxDelay(maxDelay)
+                .build());
+    }
+
+}
@@ -1,10 +1,14 @@
 package com.devtiro.pets.config;
 
 import co.elastic.clients.elasticsearch.nodes.Http;
+import com.devtiro.pets.security.BoundedPasswordEncoder;
 import com.devtiro.pets.security.CustomAccessDeniedHandler;
 import com.devtiro.pets.security.CustomAuthenticationEntryPoint;
 import com.devtiro.pets.security.JwtAuthenticationFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -17,6 +21,7 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
@@ -25,6 +30,7 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
 import java.util.Arrays;
 
 @Configuration
@@ -37,19 +43,40 @@ public class SecurityConfig {
     private final UserDetailsService userDetailsService;
     private final CustomAccessDeniedHandler accessDeniedHandler;
     private final CustomAuthenticationEntryPoint authenticationEntryPoint;
+    private final UserDetailsPasswordService userDetailsPasswordService;
+
+    @Value("${security.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    @Value("${security.password.hashing.threads:0}")
+    private int hashingThreads;
+
+    @Value("${security.password.hashing.queue-capacity:100}")
+    private int hashingQueueCapacity;
+
+    @Value("${security.password.hashing.max-queue-wait:2s}")
+    private Duration hashingMaxQueueWait;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
+                        // Async results (CompletableFuture controllers) are written in an ASYNC dispatch,
+                        // the original request was already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // Public endpoints - Authentication
                         .requestMatchers("/api/auth/**").permitAll()
 
+                        // Monitoring - health is public, metrics and caches are STAFF only
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("STAFF")
+
                         // Public endpoints - Pets (browsing - GET only)
                         .requestMatchers(HttpMethod.GET, "/api/pets").hasRole("STAFF")
-                        .requestMatchers(HttpMethod.GET, "/api/pets/available", "/api/pets/{petId}").hasAnyRole("STAFF", "USER")
-                        .requestMatchers(HttpMethod.POST, "/api/pets/search").hasAnyRole("STAFF", "USER")
+                        .requestMatchers(HttpMethod.GET, "/api/pets/available", "/api/pets/{petId}", "/api/pets/{petId}/profile").hasAnyRole("STAFF", "USER")
+                        .requestMatchers(HttpMethod.POST, "/api/pets/search", "/api/pets/search/batch").hasAnyRole("STAFF", "USER")
 
                         // Public endpoints - Photos (viewing - GET only)
                         .requestMatchers(HttpMethod.GET, "/api/photos/{petId}").hasAnyRole("STAFF", "USER")
@@ -59,6 +86,7 @@ public class SecurityConfig {
 
                         // STAFF only endpoints - Pet Management (POST, PUT, PATCH, DELETE)
                         .requestMatchers(HttpMethod.POST, "/api/pets").hasRole("STAFF")
+                        .requestMatchers(HttpMethod.POST, "/api/pets/bulk").hasRole("STAFF")
                         .requestMatchers(HttpMethod.PUT, "/api/pets/{petId}").hasRole("STAFF")
                         .requestMatchers(HttpMethod.PATCH, "/api/pets/{petId}/status").hasRole("STAFF")
                         .requestMatchers(HttpMethod.DELETE, "/api/pets/{petId}").hasRole("STAFF")
@@ -95,15 +123,26 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * BCrypt on its own bounded pool. Hashes made with a lower strength than configured
+     * are upgraded on the next successful login.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        return new BoundedPasswordEncoder(
+                new BCryptPasswordEncoder(bcryptStrength),
+                hashingThreads > 0 ? hashingThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                hashingQueueCapacity,
+                hashingMaxQueueWait,
+                meterRegistry);
     }
 
     @Bean
-    public AuthenticationManager authenticationManager() throws Exception {
+    public AuthenticationManager authenticationManager(PasswordEncoder passwordEncoder) throws Exception {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        // Rehashes the password with the current strength after a login with an older hash
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService);
         return new ProviderManager(authProvider);
     }
 
@@ -1,6 +1,7 @@
 package com.devtiro.pets.config;
 
 import com.devtiro.pets.domain.entity.User;
+import com.devtiro.pets.security.AuthenticatedUser;
 import org.springframework.data.domain.AuditorAware;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
@@ -23,11 +24,15 @@ public class SpringSecurityAuditorAware implements AuditorAware<String> {
                     if (principal instanceof User user) {
                         return user.getUsername();
                     }
-                    // Case 2: Principal is already a String (e.g., anonymousUser)
+                    // Case 2: Principal built from the access token claims
+                    if (principal instanceof AuthenticatedUser authenticatedUser) {
+                        return authenticatedUser.getUsername();
+                    }
+                    // Case 3: Principal is already a String (e.g., anonymousUser)
                     if (principal instanceof String s) {
                         return s;
                     }
-                    // Case 3: Principal is a generic UserDetails
+                    // Case 4: Principal is a generic UserDetails
                     if (principal instanceof UserDetails userDetails) {
                         return userDetails.getUsername();
                     }
@@ -0,0 +1,101 @@
+package com.devtiro.pets.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier thread while blocked, from the JDK's
+ * jdk.VirtualThreadPinned JFR event, without a separate JFR recording or restart flags.
+ * A pinned virtual thread holds its carrier, so a few pinned Elasticsearch calls can stall every request.
+ * The stack of each new pinning site is logged once (warn), then only counted.
+ * Metric: jvm.threads.virtual.pinned (timer of the pinned durations).
+ */
+@Slf4j
+@Component
+public class VirtualThreadPinningMonitor {
+
+    private static final String pinnedEvent = "jdk.VirtualThreadPinned";
+    private static final int siteFrames = 3;
+    private static final int loggedFrames = 20;
+    private static final int maxReportedSites = 1000;
+
+    private final MeterRegistry meterRegistry;
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+    private RecordingStream recording;
+
+    @Value("${virtual-threads.pinning-diagnostics.enabled:false}")
+    private boolean enabled;
+
+    @Value("${virtual-threads.pinning-diagnostics.threshold:20ms}")
+    private Duration threshold;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        recording = new RecordingStream();
+        recording.enable(pinnedEvent).withThreshold(threshold).withStackTrace();
+        recording.onEvent(pinnedEvent, this::report);
+        recording.startAsync();
+        log.info("Reporting virtual threads pinned for more than {}", threshold);
+    }
+
+    private void report(RecordedEvent event) {
+        meterRegistry.timer("jvm.threads.virtual.pinned").record(event.getDuration());
+
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace == null) {
+            return;
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        // The top frames are the JDK's parking code, the site is where the calling code blocked
+        String site = frames.stream()
+                .filter(frame -> !isJdkFrame(frame))
+                .limit(siteFrames)
+                .map(VirtualThreadPinningMonitor::frame)
+                .collect(Collectors.joining(" < "));
+        // Each site is logged once, bounded so a varying stack cannot grow the set without limit
+        if (reportedSites.size() < maxReportedSites && reportedSites.add(site)) {
+            log.warn("Virtual thread #{} pinned for {} ms\n\tat {}",
+                    event.getThread() == null ? "?" : event.getThread().getJavaThreadId(),
+                    event.getDuration().toMillis(),
+                    frames.stream().limit(loggedFrames).map(VirtualThreadPinningMonitor::frame).collect(Collectors.joining("\n\tat ")));
+        }
+    }
+
+    private static boolean isJdkFrame(RecordedFrame frame) {
+        String type = frame.getMethod().getType().getName();
+        return type.startsWith("java.") || type.startsWith("jdk.") || type.startsWith("sun.");
+    }
+
+    private static String frame(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+}
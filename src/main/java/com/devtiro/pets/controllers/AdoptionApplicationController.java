@@ -5,7 +5,7 @@ import com.devtiro.pets.domain.dto.AdoptionApplicationDto;
 import com.devtiro.pets.domain.dto.AdoptionApplicationUpdateRequest;
 import com.devtiro.pets.domain.dto.AdoptionApplicationUpdateStatusRequest;
 import com.devtiro.pets.domain.entity.AdoptionApplicationStatus;
-import com.devtiro.pets.domain.entity.User;
+import com.devtiro.pets.security.AuthenticatedUser;
 import com.devtiro.pets.services.AdoptionApplicationService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -39,7 +39,7 @@ public class AdoptionApplicationController {
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<AdoptionApplicationDto> createAdoptionApplication(
             @Valid @RequestBody AdoptionApplicationCreateRequest request,
-            @AuthenticationPrincipal User applicant
+            @AuthenticationPrincipal AuthenticatedUser applicant
     ) {
         AdoptionApplicationDto application = adoptionApplicationService.createApplication(request, applicant);
         return new ResponseEntity<>(application, HttpStatus.CREATED);
@@ -54,7 +54,7 @@ public class AdoptionApplicationController {
     public ResponseEntity<AdoptionApplicationDto> updateApplication(
             @PathVariable String applicationId,
             @Valid @RequestBody AdoptionApplicationUpdateRequest request,
-            @AuthenticationPrincipal User applicant
+            @AuthenticationPrincipal AuthenticatedUser applicant
     ) {
 
         AdoptionApplicationDto response = adoptionApplicationService.updateApplication(
@@ -70,7 +70,7 @@ public class AdoptionApplicationController {
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<AdoptionApplicationDto> submitApplication(
             @PathVariable String applicationId,
-            @AuthenticationPrincipal User applicant
+            @AuthenticationPrincipal AuthenticatedUser applicant
     ) {
         AdoptionApplicationDto response = adoptionApplicationService.submitApplication(
                 applicationId, applicant);
@@ -86,7 +86,7 @@ public class AdoptionApplicationController {
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<AdoptionApplicationDto> withdrawApplication(
             @PathVariable String applicationId,
-            @AuthenticationPrincipal User applicant) {
+            @AuthenticationPrincipal AuthenticatedUser applicant) {
 
         AdoptionApplicationDto response = adoptionApplicationService.withdrawApplication(
                 applicationId, applicant);
@@ -102,7 +102,7 @@ public class AdoptionApplicationController {
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<Void> deleteApplication(
             @PathVariable String applicationId,
-            @AuthenticationPrincipal User applicant
+            @AuthenticationPrincipal AuthenticatedUser applicant
     ) {
         adoptionApplicationService.deleteApplication(applicationId, applicant);
 
@@ -118,7 +118,7 @@ public class AdoptionApplicationController {
     @PreAuthorize("hasAnyRole('USER', 'STAFF')")
     public ResponseEntity<AdoptionApplicationDto> getApplication(
             @PathVariable String applicationId,
-            @AuthenticationPrincipal User userPrincipal
+            @AuthenticationPrincipal AuthenticatedUser userPrincipal
     ) {
         AdoptionApplicationDto response = adoptionApplicationService.getApplicationById(
                 applicationId, userPrincipal);
@@ -137,7 +137,7 @@ public class AdoptionApplicationController {
                     page = 0,
                     sort = "createdAt",
                     direction = Sort.Direction.DESC) Pageable pageable,
-            @AuthenticationPrincipal User applicant
+            @AuthenticationPrincipal AuthenticatedUser applicant
     ) {
         Page<AdoptionApplicationDto> response = adoptionApplicationService.getMyApplications(
                 applicant, pageable);
@@ -210,7 +210,7 @@ public class AdoptionApplicationController {
     public ResponseEntity<AdoptionApplicationDto> updateApplicationStatus(
             @PathVariable String applicationId,
             @Valid @RequestBody AdoptionApplicationUpdateStatusRequest request,
-            @AuthenticationPrincipal User staff) {
+            @AuthenticationPrincipal AuthenticatedUser staff) {
 
         AdoptionApplicationDto response = adoptionApplicationService.updateApplicationStatus(
                 applicationId, request, staff);
@@ -4,7 +4,7 @@ import com.devtiro.pets.domain.dto.security.AuthResponse;
 import com.devtiro.pets.domain.dto.security.LoginRequest;
 import com.devtiro.pets.domain.dto.security.RefreshTokenRequest;
 import com.devtiro.pets.domain.dto.security.RegisterRequest;
-import com.devtiro.pets.domain.entity.User;
+import com.devtiro.pets.security.AuthenticatedUser;
 import com.devtiro.pets.services.AuthService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -68,23 +68,19 @@ public class AuthController {
      * Requires authentication (valid access token in header)
      */
     @PostMapping("/logout")
-    public ResponseEntity<Void> logout(@AuthenticationPrincipal User user,
+    public ResponseEntity<Void> logout(@AuthenticationPrincipal AuthenticatedUser user,
                                        HttpServletRequest httpRequest) {
         String ipAddress = getClientIP(httpRequest);
-        authService.logout(user.getEmail(), ipAddress);
+        authService.logout(user, ipAddress);
         return ResponseEntity.ok().build();
     }
 
     /**
      * Extract client IP address from request
-     * Handles X-Forwarded-For header for proxied requests
+     * X-Forwarded-For is applied by Tomcat (server.forward-headers-strategy) and only from trusted proxies,
+     * a header sent by the client itself could be set to anything
      */
     private String getClientIP(HttpServletRequest request) {
-        String xForwardedForHeader = request.getHeader("X-Forwarded-For");
-        if (xForwardedForHeader == null || xForwardedForHeader.isEmpty()) {
-            return request.getRemoteAddr();
-        }
-        // X-Forwarded-For can contain multiple IPs, first one is the client
-        return xForwardedForHeader.split(",")[0].trim();
+        return request.getRemoteAddr();
     }
 }
@@ -2,7 +2,7 @@ package com.devtiro.pets.controllers;
 
 import com.devtiro.pets.domain.dto.MedicalRecordDto;
 import com.devtiro.pets.domain.dto.MedicalRecordUpdateRequest;
-import com.devtiro.pets.domain.entity.User;
+import com.devtiro.pets.security.AuthenticatedUser;
 import com.devtiro.pets.services.MedicalRecordService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -34,7 +34,7 @@ public class MedicalRecordController {
     public MedicalRecordDto addMedicalRecord(
             @PathVariable String petId,
             @Valid @RequestBody MedicalRecordUpdateRequest request,
-            @AuthenticationPrincipal User staff
+            @AuthenticationPrincipal AuthenticatedUser staff
     ) {
         return  medicalRecordService.addMedicalRecord(petId, request, staff);
     }
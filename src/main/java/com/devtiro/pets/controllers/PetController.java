@@ -1,8 +1,11 @@
 package com.devtiro.pets.controllers;
 
 import com.devtiro.pets.domain.dto.*;
-import com.devtiro.pets.domain.entity.User;
+import com.devtiro.pets.security.AuthenticatedUser;
+import com.devtiro.pets.services.PetBulkImportService;
+import com.devtiro.pets.services.PetProfileService;
 import com.devtiro.pets.services.PetService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,11 +14,14 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.data.web.SortDefault;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -24,6 +30,8 @@ import java.util.List;
 public class PetController {
 
     private final PetService petService;
+    private final PetBulkImportService petBulkImportService;
+    private final PetProfileService petProfileService;
 
     @GetMapping
     @PreAuthorize("hasRole('STAFF')")
@@ -37,6 +45,39 @@ public class PetController {
         return petService.getAllPets(pageable);
     }
 
+    /**
+     * Slice view of the list: GET /api/pets?count=exact|capped|none
+     * Capped and none let Elasticsearch stop counting early, the response only says whether a next page exists
+     */
+    @GetMapping(params = "count")
+    @PreAuthorize("hasRole('STAFF')")
+    public PetSliceResponse getAllPetsSlice(
+            @RequestParam String count,
+            @PageableDefault(
+                    size = 20,
+                    page = 0,
+                    sort = "createdAt",
+                    direction = Sort.Direction.DESC) Pageable pageable
+    ) {
+        return petService.getAllPetsSlice(pageable, HitCountMode.from(count));
+    }
+
+    /**
+     * Summary view of the list: GET /api/pets?view=summary
+     * Only the fields of a result card are fetched from Elasticsearch
+     */
+    @GetMapping(params = "view=summary")
+    @PreAuthorize("hasRole('STAFF')")
+    public Page<PetSummaryDto> getAllPetSummaries(
+            @PageableDefault(
+                    size = 20,
+                    page = 0,
+                    sort = "createdAt",
+                    direction = Sort.Direction.DESC) Pageable pageable
+    ) {
+        return petService.getAllPetSummaries(pageable);
+    }
+
     @GetMapping("/{petId}")
     @PreAuthorize("hasAnyRole('STAFF','USER')")
     public PetDto getAvailablePetById(
@@ -45,6 +86,19 @@ public class PetController {
         return petService.getAvailablePetById(petId);
     }
 
+    /**
+     * Pet, photos and medical records (staff only) loaded in parallel.
+     * Slow photo or medical record lookups are left out and listed in {@code unavailable}
+     */
+    @GetMapping("/{petId}/profile")
+    @PreAuthorize("hasAnyRole('STAFF','USER')")
+    public PetProfileDto getPetProfile(
+            @PathVariable("petId") String petId,
+            @AuthenticationPrincipal AuthenticatedUser user
+    ) {
+        return petProfileService.getPetProfile(petId, user);
+    }
+
     @GetMapping("/available")
     @PreAuthorize("hasAnyRole('STAFF','USER')")
     public Page<PetDto> getAllAvailablePets(
@@ -57,15 +111,53 @@ public class PetController {
         return petService.getAllAvailablePets(pageable);
     }
 
+    @GetMapping(value = "/available", params = "count")
+    @PreAuthorize("hasAnyRole('STAFF','USER')")
+    public PetSliceResponse getAllAvailablePetsSlice(
+            @RequestParam String count,
+            @PageableDefault(
+                    size = 20,
+                    page = 0,
+                    sort = "createdAt",
+                    direction = Sort.Direction.DESC) Pageable pageable
+    ) {
+        return petService.getAllAvailablePetsSlice(pageable, HitCountMode.from(count));
+    }
+
+    @GetMapping(value = "/available", params = "view=summary")
+    @PreAuthorize("hasAnyRole('STAFF','USER')")
+    public Page<PetSummaryDto> getAllAvailablePetSummaries(
+            @PageableDefault(
+                    size = 20,
+                    page = 0,
+                    sort = "createdAt",
+                    direction = Sort.Direction.DESC) Pageable pageable
+    ) {
+        return petService.getAllAvailablePetSummaries(pageable);
+    }
+
     @PostMapping
     @PreAuthorize("hasRole('STAFF')")
     public PetDto createPet(
             @Valid @RequestBody PetCreateRequest request,
-            @AuthenticationPrincipal User staff
+            @AuthenticationPrincipal AuthenticatedUser staff
     ) {
         return petService.createPet(request, staff);
     }
 
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    @PreAuthorize("hasRole('STAFF')")
+    public PetBulkImportResponse importPets(
+            HttpServletRequest request,
+            @AuthenticationPrincipal AuthenticatedUser staff
+    ) throws IOException {
+        // Read the body as a stream so large uploads are never buffered
+        BulkImportFormat format = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                ? BulkImportFormat.NDJSON
+                : BulkImportFormat.CSV;
+        return petBulkImportService.importPets(request.getInputStream(), format, staff);
+    }
+
     @PutMapping("/{petId}")
     @PreAuthorize("hasRole('STAFF')")
     public PetDto updatePet(
@@ -94,7 +186,7 @@ public class PetController {
 
     @PostMapping("/search")
     @PreAuthorize("hasAnyRole('STAFF','USER')")
-    public Page<PetDto> searchPets(
+    public CompletableFuture<Page<PetDto>> searchPets(
             @RequestBody PetSearchRequest request,
             @PageableDefault(
                     size = 20,
@@ -102,6 +194,83 @@ public class PetController {
             )
             @SortDefault(sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable
     ) {
-        return petService.searchPets(request, pageable);
+        // The servlet thread is released while Elasticsearch answers
+        return petService.searchPetsAsync(request, pageable);
+    }
+
+    /**
+     * Slice view of the search: POST /api/pets/search?count=exact|capped|none
+     */
+    @PostMapping(value = "/search", params = "count")
+    @PreAuthorize("hasAnyRole('STAFF','USER')")
+    public PetSliceResponse searchPetsSlice(
+            @RequestBody PetSearchRequest request,
+            @RequestParam String count,
+            @PageableDefault(
+                    size = 20,
+                    page = 0
+            )
+            @SortDefault(sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable
+    ) {
+        return petService.searchPetsSlice(request, pageable, HitCountMode.from(count));
+    }
+
+    /**
+     * Summary view of the search: POST /api/pets/search?view=summary
+     */
+    @PostMapping(value = "/search", params = "view=summary")
+    @PreAuthorize("hasAnyRole('STAFF','USER')")
+    public Page<PetSummaryDto> searchPetSummaries(
+            @RequestBody PetSearchRequest request,
+            @PageableDefault(
+                    size = 20,
+                    page = 0
+            )
+            @SortDefault(sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable
+    ) {
+        return petService.searchPetSummaries(request, pageable);
+    }
+
+    /**
+     * Several searches in one call (one _msearch round trip), e.g. the panels of a home screen
+     */
+    @PostMapping("/search/batch")
+    @PreAuthorize("hasAnyRole('STAFF','USER')")
+    public PetBatchSearchResponse searchPetsBatch(
+            @Valid @RequestBody PetBatchSearchRequest request
+    ) {
+        return petService.searchPetsBatch(request);
+    }
+
+    /**
+     * Search with facet counts: POST /api/pets/search?facets=true
+     * Returns the same page as the plain search plus species, size, age and distance counts
+     */
+    @PostMapping(value = "/search", params = "facets=true")
+    @PreAuthorize("hasAnyRole('STAFF','USER')")
+    public PetFacetedSearchResponse searchPetsWithFacets(
+            @RequestBody PetSearchRequest request,
+            @PageableDefault(
+                    size = 20,
+                    page = 0
+            )
+            @SortDefault(sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable
+    ) {
+        return petService.searchPetsWithFacets(request, pageable);
+    }
+
+    /**
+     * Cursor mode of the search for deep scrolling: POST /api/pets/search?mode=cursor
+     * Send the nextCursor of the previous response (with the same body) to get the next page
+     */
+    @PostMapping(value = "/search", params = "mode=cursor")
+    @PreAuthorize("hasAnyRole('STAFF','USER')")
+    public PetSearchCursorResponse searchPetsWithCursor(
+            @RequestBody PetSearchRequest request,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @SortDefault(sort = "createdAt", direction = Sort.Direction.DESC) Sort sort
+    ) {
+        return petService.searchPetsWithCursor(request, cursor, size, sort);
     }
 }
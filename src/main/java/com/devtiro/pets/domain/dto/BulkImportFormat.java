@@ -0,0 +1,9 @@
+package com.devtiro.pets.domain.dto;
+
+/**
+ * Supported upload formats of the bulk pet import
+ */
+public enum BulkImportFormat {
+    NDJSON,     // One PetCreateRequest JSON object per line
+    CSV         // Header line followed by one pet per line
+}
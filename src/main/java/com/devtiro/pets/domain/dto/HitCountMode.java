@@ -0,0 +1,34 @@
+package com.devtiro.pets.domain.dto;
+
+import org.springframework.data.domain.Pageable;
+
+/**
+ * How many matching pets Elasticsearch counts for a page
+ */
+public enum HitCountMode {
+    EXACT,      // Count every match (track_total_hits: true)
+    CAPPED,     // Count up to search.total-hits.cap, reported as e.g. "10,000+" beyond it
+    NONE;       // No total, hits are only counted far enough to know whether a next page exists
+
+    /**
+     * track_total_hits limit for a page, null to count exactly.
+     * Counting one hit past the page is enough to tell whether a next page exists.
+     */
+    public Integer trackTotalHitsUpTo(Pageable pageable, int cap) {
+        int pastPage = (int) pageable.getOffset() + pageable.getPageSize() + 1;
+        return switch (this) {
+            case EXACT -> null;
+            case CAPPED -> Math.max(cap, pastPage);
+            case NONE -> pastPage;
+        };
+    }
+
+    public static HitCountMode from(String value) {
+        for (HitCountMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("count must be one of exact, capped or none");
+    }
+}
@@ -0,0 +1,54 @@
+package com.devtiro.pets.domain.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+/**
+ * One search of a batch: the filters plus the page spec that a plain search takes as query parameters
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetBatchSearchQuery {
+
+    @NotNull(message = "filter is required")
+    @Valid
+    private PetSearchRequest filter;
+
+    @Min(value = 0, message = "page must not be negative")
+    private Integer page;
+
+    @Min(value = 1, message = "size must be at least 1")
+    @Max(value = 100, message = "size must not exceed 100")
+    private Integer size;
+
+    private List<String> sort; // "property,direction" entries, e.g. "distance,asc"
+
+    public Pageable toPageable() {
+        Sort pageSort = sort == null || sort.isEmpty()
+                ? Sort.by(Sort.Direction.DESC, "createdAt")
+                : Sort.by(sort.stream().map(PetBatchSearchQuery::toOrder).toList());
+        return PageRequest.of(page != null ? page : 0, size != null ? size : 20, pageSort);
+    }
+
+    private static Sort.Order toOrder(String spec) {
+        String[] parts = spec.split(",");
+        Sort.Direction direction = parts.length > 1
+                ? Sort.Direction.fromOptionalString(parts[1].trim()).orElse(Sort.Direction.ASC)
+                : Sort.Direction.ASC;
+        return new Sort.Order(direction, parts[0].trim());
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.devtiro.pets.domain.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetBatchSearchRequest {
+
+    @NotEmpty(message = "at least one search is required")
+    @Size(max = 10, message = "a batch must not contain more than 10 searches")
+    @Valid
+    private List<PetBatchSearchQuery> searches;
+
+}
@@ -0,0 +1,18 @@
+package com.devtiro.pets.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetBatchSearchResponse {
+
+    private List<PetBatchSearchResult> results;
+
+}
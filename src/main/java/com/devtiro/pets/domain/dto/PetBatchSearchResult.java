@@ -0,0 +1,46 @@
+package com.devtiro.pets.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+/**
+ * Result of one search of a batch, either the page fields or the error are set
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetBatchSearchResult {
+
+    private int index;
+    private List<PetDto> pets;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+    private String error;
+
+    public static PetBatchSearchResult of(int index, Page<PetDto> page) {
+        return PetBatchSearchResult.builder()
+                .index(index)
+                .pets(page.getContent())
+                .page(page.getNumber())
+                .size(page.getSize())
+                .totalElements(page.getTotalElements())
+                .totalPages(page.getTotalPages())
+                .build();
+    }
+
+    public static PetBatchSearchResult failed(int index, String error) {
+        return PetBatchSearchResult.builder()
+                .index(index)
+                .error(error)
+                .build();
+    }
+
+}
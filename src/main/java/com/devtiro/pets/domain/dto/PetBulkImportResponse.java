@@ -0,0 +1,22 @@
+package com.devtiro.pets.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetBulkImportResponse {
+
+    private int total;
+    private int created;
+    private int invalid;
+    private int failed;
+    private List<PetBulkImportRowResult> results;
+
+}
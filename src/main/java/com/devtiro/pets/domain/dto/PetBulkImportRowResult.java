@@ -0,0 +1,27 @@
+package com.devtiro.pets.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetBulkImportRowResult {
+
+    public enum Status {
+        CREATED,    // Row indexed
+        INVALID,    // Row rejected by validation, never sent to Elasticsearch
+        FAILED      // Row rejected by Elasticsearch
+    }
+
+    private int row;
+    private String id;
+    private Status status;
+    private List<String> errors;
+
+}
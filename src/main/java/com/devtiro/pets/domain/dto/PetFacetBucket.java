@@ -0,0 +1,17 @@
+package com.devtiro.pets.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetFacetBucket {
+
+    private String key;
+    private long count;
+
+}
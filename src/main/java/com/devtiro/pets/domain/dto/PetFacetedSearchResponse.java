@@ -0,0 +1,23 @@
+package com.devtiro.pets.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetFacetedSearchResponse {
+
+    private List<PetDto> pets;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+    private PetSearchFacets facets;
+
+}
@@ -0,0 +1,26 @@
+package com.devtiro.pets.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Pet with its photos and medical records in one response.
+ * A section that timed out or failed is null and named in {@code unavailable},
+ * medical records are only loaded for staff.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetProfileDto {
+
+    private PetDto pet;
+    private List<PhotoDto> photos;
+    private List<MedicalRecordDto> medicalRecords;
+    private List<String> unavailable;
+
+}
@@ -0,0 +1,25 @@
+package com.devtiro.pets.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a cursor (search_after) based pet search.
+ * Pass {@code nextCursor} back to fetch the following page, it is null on the last page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetSearchCursorResponse {
+
+    private List<PetDto> pets;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+
+}
@@ -0,0 +1,26 @@
+package com.devtiro.pets.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Filter counts shown next to the search facets.
+ * Each facet is counted with every filter applied except its own,
+ * so selecting a species still shows the counts of the other species.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetSearchFacets {
+
+    private List<PetFacetBucket> species;
+    private List<PetFacetBucket> petSize;
+    private List<PetFacetBucket> age;       // One bucket per year of age
+    private List<PetFacetBucket> distance;  // Distance bands in km, only when a location is given
+
+}
@@ -0,0 +1,46 @@
+package com.devtiro.pets.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Page without the cost of an exact count, for infinite scroll.
+ * {@code total} is the exact count, a lower bound like "10,000+" or null when counting was off.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetSliceResponse {
+
+    private List<PetDto> pets;
+    private int page;
+    private int size;
+    private boolean hasNext;
+    private String total;
+
+    /**
+     * @param counted    hits counted by Elasticsearch, see {@link HitCountMode#trackTotalHitsUpTo}
+     * @param lowerBound whether counting stopped before the real total
+     */
+    public static PetSliceResponse of(List<PetDto> pets, Pageable pageable, HitCountMode mode, long counted, boolean lowerBound) {
+        String total = switch (mode) {
+            case NONE -> null;
+            case EXACT, CAPPED -> String.format(Locale.ROOT, lowerBound ? "%,d+" : "%d", counted);
+        };
+        return PetSliceResponse.builder()
+                .pets(pets)
+                .page(pageable.getPageNumber())
+                .size(pageable.getPageSize())
+                .hasNext(counted > pageable.getOffset() + pageable.getPageSize())
+                .total(total)
+                .build();
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.devtiro.pets.domain.dto;
+
+import com.devtiro.pets.domain.entity.PetSize;
+import com.devtiro.pets.domain.entity.PetStatus;
+import com.devtiro.pets.domain.entity.Species;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Compact pet for result cards, read straight from a filtered _source instead of the full Pet
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetSummaryDto {
+
+    // The only _source fields fetched in summary mode
+    public static final List<String> SOURCE_FIELDS = List.of("name", "species", "age", "petSize", "status", "location");
+
+    private String id;
+    private String name;
+    private Species species;
+    private Integer age;
+    private PetSize petSize;
+    private PetStatus status;
+    private GeoPointDto location;
+    private Double distance;
+
+}
@@ -6,6 +6,7 @@ import org.springframework.data.elasticsearch.annotations.DateFormat;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
 
 import java.time.LocalDateTime;
 
@@ -31,6 +32,10 @@ public class AdoptionApplication extends Auditing {
     @Field(type = FieldType.Text)
     private String petName;
 
+    // Staff member responsible for the pet, copied from the pet so staff digests need no join
+    @Field(type = FieldType.Keyword)
+    private String staffId;
+
     // Personal Contact Information
     @Field(type = FieldType.Text)
     private String firstName;
@@ -83,4 +88,7 @@ public class AdoptionApplication extends Auditing {
 
     @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second)
     private LocalDateTime submittedAt; // When the application was submitted (not draft anymore)
+
+    // _seq_no/_primary_term of the loaded document, sent with the save so concurrent changes are not lost
+    private SeqNoPrimaryTerm seqNoPrimaryTerm;
 }
@@ -0,0 +1,45 @@
+package com.devtiro.pets.domain.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a scheduled notification job, e.g. the staff digest, one document per job.
+ * A window is recorded as pending before its emails are queued and completed after,
+ * so a restart repeats exactly the pending window (the outbox drops the repeated emails).
+ */
+@Document(indexName = "notification_checkpoints")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationCheckpoint {
+
+    @Id
+    private String id;
+
+    // Everything up to here has been handled
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second)
+    private LocalDateTime completedUntil;
+
+    // End of the window in progress, empty between runs
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second)
+    private LocalDateTime pendingUntil;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
+    private LocalDateTime updatedAt;
+
+    // _seq_no/_primary_term of the loaded checkpoint, so only one instance runs a window
+    private SeqNoPrimaryTerm seqNoPrimaryTerm;
+
+}
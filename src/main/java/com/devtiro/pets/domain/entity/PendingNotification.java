@@ -0,0 +1,72 @@
+package com.devtiro.pets.domain.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outbox entry of an email. Written when the notification is triggered, sent later in batches by the
+ * notification outbox dispatcher. The id is the deduplication key, an email with a key already in the
+ * outbox is not queued again.
+ */
+@Document(indexName = "pending_notifications")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingNotification {
+
+    public enum Status {
+        PENDING,
+        SENT,
+        FAILED // gave up after the maximum attempts
+    }
+
+    @Id
+    private String id;
+
+    // Kind of notification, e.g. submit-confirmation, used as metrics tag
+    @Field(type = FieldType.Keyword)
+    private String type;
+
+    @Field(type = FieldType.Keyword)
+    private String recipient;
+
+    @Field(type = FieldType.Text, index = false)
+    private String subject;
+
+    @Field(type = FieldType.Text, index = false)
+    private String text;
+
+    @Field(type = FieldType.Keyword)
+    private Status status;
+
+    @Field(type = FieldType.Integer)
+    private int attempts;
+
+    // Due time of the next send; while a dispatcher holds the entry it is pushed out by the claim timeout
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
+    private LocalDateTime nextAttemptAt;
+
+    @Field(type = FieldType.Text, index = false)
+    private String lastError;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
+    private LocalDateTime createdAt;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
+    private LocalDateTime sentAt;
+
+    // _seq_no/_primary_term of the loaded entry, so only one dispatcher claims it
+    private SeqNoPrimaryTerm seqNoPrimaryTerm;
+
+}
@@ -8,6 +8,7 @@ import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
 import org.springframework.data.elasticsearch.annotations.GeoPointField;
 import org.springframework.data.elasticsearch.core.geo.GeoPoint;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
 
 
 @EqualsAndHashCode(callSuper = true)
@@ -54,4 +55,7 @@ public class Pet extends Auditing {
     @GeoPointField
     private GeoPoint location;
 
+    // Not stored in _source, filled from _seq_no/_primary_term on reads and saves
+    private SeqNoPrimaryTerm seqNoPrimaryTerm;
+
 }
@@ -0,0 +1,48 @@
+package com.devtiro.pets.domain.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+import java.time.LocalDateTime;
+
+/**
+ * An issued refresh token, one per login (device) of a user.
+ * Keyed by the token's jti, only the SHA-256 hash of the token itself is stored.
+ */
+@Document(indexName = "refresh_tokens")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshToken {
+
+    @Id
+    private String id;
+
+    @Field(type = FieldType.Keyword)
+    private String userId;
+
+    @Field(type = FieldType.Keyword, index = false)
+    private String tokenHash;
+
+    @Field(type = FieldType.Keyword)
+    private String ipAddress;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
+    private LocalDateTime createdAt;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
+    private LocalDateTime expiresAt;
+
+    public boolean isExpired() {
+        return expiresAt.isBefore(LocalDateTime.now());
+    }
+
+}
@@ -45,12 +45,9 @@ public class User extends Auditing implements UserDetails {
     private boolean enabled;
     @Field(type = FieldType.Boolean)
     private boolean accountNonLocked;
-
-    // Refresh token fields
-    @Field(type = FieldType.Text)
-    private String refreshToken;
+    // Set when the account was locked after too many failed logins, empty for locks by staff
     @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
-    private LocalDateTime refreshTokenExpiryDate;
+    private LocalDateTime lockedUntil;
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
@@ -0,0 +1,55 @@
+package com.devtiro.pets.domain.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lock document keeping a username or email unique, its id is the reserved value.
+ * Created with op_type=create before the user is saved; pending until the user exists.
+ */
+@Document(indexName = "user_reservations")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserReservation {
+
+    public enum Type {
+        USERNAME,
+        EMAIL
+    }
+
+    @Id
+    private String id;
+
+    @Field(type = FieldType.Keyword)
+    private Type type;
+
+    @Field(type = FieldType.Keyword)
+    private String value;
+
+    // The user the value is reserved for
+    @Field(type = FieldType.Keyword)
+    private String userId;
+
+    // True until the user has been saved, pending reservations without a user are orphans
+    @Field(type = FieldType.Boolean)
+    private boolean pending;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
+    private LocalDateTime createdAt;
+
+    public static String idOf(Type type, String value) {
+        return type.name().toLowerCase() + ":" + value;
+    }
+
+}
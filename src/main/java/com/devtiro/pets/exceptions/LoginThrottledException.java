@@ -0,0 +1,19 @@
+package com.devtiro.pets.exceptions;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Exception thrown when a client makes more login attempts than allowed
+ */
+@Getter
+public class LoginThrottledException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public LoginThrottledException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,7 @@
+package com.devtiro.pets.exceptions;
+
+public class PasswordHashingRejectedException extends RuntimeException {
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.devtiro.pets.exceptions;
+
+public class RegistrationUnavailableException extends RuntimeException {
+    public RegistrationUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.devtiro.pets.exceptions;
+
+public class SearchTimeoutException extends RuntimeException {
+    public SearchTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -7,16 +7,9 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
-
 @Repository
 public interface ApplicationRepository extends ElasticsearchRepository<AdoptionApplication, String> {
 
-    /**
-     * Check if a user has already submitted (non-draft) application for a pet
-     */
-    Optional<AdoptionApplication> findByPetIdAndApplicantId(String petId, String applicantId);
-
     /**
      * Find all applications by applicant ID
      */
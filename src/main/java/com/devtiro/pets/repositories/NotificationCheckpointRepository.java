@@ -0,0 +1,9 @@
+package com.devtiro.pets.repositories;
+
+import com.devtiro.pets.domain.entity.NotificationCheckpoint;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface NotificationCheckpointRepository extends ElasticsearchRepository<NotificationCheckpoint, String> {
+}
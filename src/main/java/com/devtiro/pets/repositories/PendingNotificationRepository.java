@@ -0,0 +1,22 @@
+package com.devtiro.pets.repositories;
+
+import com.devtiro.pets.domain.entity.PendingNotification;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface PendingNotificationRepository extends ElasticsearchRepository<PendingNotification, String> {
+
+    /**
+     * Entries due for a send attempt
+     */
+    Page<PendingNotification> findByStatusAndNextAttemptAtLessThanEqual(PendingNotification.Status status,
+                                                                        LocalDateTime dueBy, Pageable pageable);
+
+    void deleteByStatusAndSentAtBefore(PendingNotification.Status status, LocalDateTime sentBefore);
+
+}
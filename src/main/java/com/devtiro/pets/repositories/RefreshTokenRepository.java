@@ -0,0 +1,16 @@
+package com.devtiro.pets.repositories;
+
+import com.devtiro.pets.domain.entity.RefreshToken;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface RefreshTokenRepository extends ElasticsearchRepository<RefreshToken, String> {
+
+    void deleteByUserId(String userId);
+
+    void deleteByExpiresAtBefore(LocalDateTime expiresBefore);
+
+}
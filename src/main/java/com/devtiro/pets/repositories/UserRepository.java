@@ -4,6 +4,7 @@ import com.devtiro.pets.domain.entity.User;
 import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,4 +14,6 @@ public interface UserRepository extends ElasticsearchRepository<User, String> {
 
     Optional<User> findByUsername(String username);
 
+    List<User> findAllByEnabledFalseOrAccountNonLockedFalse();
+
 }
@@ -0,0 +1,19 @@
+package com.devtiro.pets.repositories;
+
+import com.devtiro.pets.domain.entity.UserReservation;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface UserReservationRepository extends ElasticsearchRepository<UserReservation, String> {
+
+    /**
+     * Reservations still waiting for their user, candidates for the orphan cleanup
+     */
+    Page<UserReservation> findByPendingTrueAndCreatedAtBefore(LocalDateTime createdBefore, Pageable pageable);
+
+}
@@ -0,0 +1,62 @@
+package com.devtiro.pets.security;
+
+import com.devtiro.pets.domain.entity.Role;
+import com.devtiro.pets.domain.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lightweight principal of an authenticated request.
+ * Holds only what the access token carries, so it can be built from verified claims
+ * without loading the {@link User} document (no password hash, no refresh token).
+ * Services that need the full user load it explicitly by id.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class AuthenticatedUser implements Principal {
+
+    private final String id;
+    private final String email;
+    private final String username;
+    private final Role role;
+
+    public static AuthenticatedUser from(User user) {
+        return AuthenticatedUser.builder()
+                .id(user.getId())
+                .email(user.getEmail())
+                .username(user.getUsername())
+                .role(user.getRole())
+                .build();
+    }
+
+    public static AuthenticatedUser from(JwtClaims claims) {
+        return AuthenticatedUser.builder()
+                .id(claims.userId())
+                .email(claims.email())
+                .username(claims.username())
+                .role(claims.role())
+                .build();
+    }
+
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.devtiro.pets.security;
+
+import com.devtiro.pets.exceptions.PasswordHashingRejectedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Runs the hashing of the delegate encoder on a small dedicated pool, so a burst of logins
+ * (or a credential stuffing attack) uses at most that many cores instead of every request thread.
+ * The queue is bounded: a full queue, or a hash that waited longer than the allowed queue time,
+ * is rejected right away with {@link PasswordHashingRejectedException} instead of piling up.
+ * Metrics: auth.password.hash.queue and auth.password.hash.duration (tag operation),
+ * auth.password.hash.rejected, and the executor metrics of "passwordHashing".
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Duration maxQueueWait;
+    private final MeterRegistry meterRegistry;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity,
+                                  Duration maxQueueWait, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxQueueWait = maxQueueWait;
+        this.meterRegistry = meterRegistry;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hashing-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "passwordHashing", List.of()).bindTo(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return hash("encode", () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return hash("matches", () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Only reads the cost from the stored hash, no hashing involved
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T hash(String operation, Supplier<T> hashing) {
+        long submittedAt = System.nanoTime();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                long waited = startedAt - submittedAt;
+                meterRegistry.timer("auth.password.hash.queue", "operation", operation).record(waited, TimeUnit.NANOSECONDS);
+
+                // The caller has most likely given up by now, do not spend the CPU on it
+                if (waited > maxQueueWait.toNanos()) {
+                    throw rejected(operation, "queued too long");
+                }
+                try {
+                    return hashing.get();
+                } finally {
+                    meterRegistry.timer("auth.password.hash.duration", "operation", operation)
+                            .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw rejected(operation, "queue full");
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            throw rejected(operation, "interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private PasswordHashingRejectedException rejected(String operation, String reason) {
+        meterRegistry.counter("auth.password.hash.rejected", "operation", operation, "reason", reason).increment();
+        log.warn("Rejected password {}: {}", operation, reason);
+        return new PasswordHashingRejectedException("Too many sign-in requests right now, please try again shortly");
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+}
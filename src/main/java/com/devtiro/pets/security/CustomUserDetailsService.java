@@ -3,18 +3,25 @@ package com.devtiro.pets.security;
 import com.devtiro.pets.domain.entity.User;
 import com.devtiro.pets.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.Optional;
+
 /**
  * Custom UserDetailsService implementation for loading user data
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
@@ -30,7 +37,7 @@ public class CustomUserDetailsService implements UserDetailsService {
      * - Cache key: email
      * - TTL: 15 minutes (configured in CacheConfig)
      * - Max size: 1000 entries
-     * - Evicted on: token refresh, logout, password change
+     * - Evicted on: password change, lockout and unlock
      */
     @Override
     @Cacheable(value = "usersByEmail", key = "#email", unless = "#result == null")
@@ -39,4 +46,47 @@ public class CustomUserDetailsService implements UserDetailsService {
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + email));
         return user;
     }
+
+    /**
+     * Store a rehashed password, called after a successful login when the stored hash
+     * was made with a lower BCrypt strength than the configured one
+     */
+    @Override
+    @CacheEvict(value = "usersByEmail", key = "#user.email")
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User existing = (User) user;
+        User updated = userRepository.findById(existing.getId())
+                .map(stored -> {
+                    stored.setPassword(newPassword);
+                    return userRepository.save(stored);
+                })
+                .orElse(existing);
+        log.info("Upgraded password hash of user {}", updated.getId());
+        return updated;
+    }
+
+    /**
+     * Lock the account until the given time, after too many failed logins
+     *
+     * @return the locked user, empty when no user has the email
+     */
+    @CacheEvict(value = "usersByEmail", key = "#email")
+    public Optional<User> lockAccount(String email, LocalDateTime lockedUntil) {
+        return userRepository.findByEmail(email)
+                .map(stored -> {
+                    stored.setAccountNonLocked(false);
+                    stored.setLockedUntil(lockedUntil);
+                    return userRepository.save(stored);
+                });
+    }
+
+    /**
+     * Unlock an account whose lockout is over
+     */
+    @CacheEvict(value = "usersByEmail", key = "#user.email")
+    public User unlockAccount(User user) {
+        user.setAccountNonLocked(true);
+        user.setLockedUntil(null);
+        return userRepository.save(user);
+    }
 }
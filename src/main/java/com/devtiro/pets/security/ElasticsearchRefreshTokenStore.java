@@ -0,0 +1,69 @@
+package com.devtiro.pets.security;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Result;
+import com.devtiro.pets.domain.entity.RefreshToken;
+import com.devtiro.pets.repositories.RefreshTokenRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Refresh tokens in the compact refresh_tokens index.
+ * Expired tokens are ignored on read and deleted by a scheduled purge.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "refresh-tokens.store", havingValue = "elasticsearch", matchIfMissing = true)
+public class ElasticsearchRefreshTokenStore implements RefreshTokenStore {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    @Override
+    public void save(RefreshToken token) {
+        refreshTokenRepository.save(token);
+    }
+
+    @Override
+    public Optional<RefreshToken> find(String tokenId) {
+        return refreshTokenRepository.findById(tokenId).filter(token -> !token.isExpired());
+    }
+
+    @Override
+    public boolean consume(String tokenId) {
+        // Of two concurrent deletes of the same document only one sees it deleted
+        String index = elasticsearchOperations.getIndexCoordinatesFor(RefreshToken.class).getIndexName();
+        try {
+            return elasticsearchClient.delete(d -> d.index(index).id(tokenId)).result() == Result.Deleted;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not delete refresh token", e);
+        }
+    }
+
+    @Override
+    public void deleteAllForUser(String userId) {
+        refreshTokenRepository.deleteByUserId(userId);
+    }
+
+    @Scheduled(
+            initialDelayString = "${refresh-tokens.purge-interval:1h}",
+            fixedDelayString = "${refresh-tokens.purge-interval:1h}")
+    public void purgeExpired() {
+        try {
+            refreshTokenRepository.deleteByExpiresAtBefore(LocalDateTime.now());
+        } catch (Exception e) {
+            log.warn("Could not purge expired refresh tokens: {}", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.devtiro.pets.security;
+
+import com.devtiro.pets.domain.entity.RefreshToken;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Refresh tokens kept in memory, for single node deployments.
+ * Every entry expires together with its token. Tokens are lost on restart, users then log in again.
+ */
+@Component
+@ConditionalOnProperty(name = "refresh-tokens.store", havingValue = "memory")
+public class InMemoryRefreshTokenStore implements RefreshTokenStore {
+
+    private final Cache<String, RefreshToken> tokens = Caffeine.newBuilder()
+            .expireAfter(Expiry.creating((String tokenId, RefreshToken token) -> {
+                Duration remaining = Duration.between(LocalDateTime.now(), token.getExpiresAt());
+                return remaining.isNegative() ? Duration.ZERO : remaining;
+            }))
+            .build();
+
+    @Override
+    public void save(RefreshToken token) {
+        tokens.put(token.getId(), token);
+    }
+
+    @Override
+    public Optional<RefreshToken> find(String tokenId) {
+        return Optional.ofNullable(tokens.getIfPresent(tokenId)).filter(token -> !token.isExpired());
+    }
+
+    @Override
+    public boolean consume(String tokenId) {
+        return tokens.asMap().remove(tokenId) != null;
+    }
+
+    @Override
+    public void deleteAllForUser(String userId) {
+        tokens.asMap().values().removeIf(token -> token.getUserId().equals(userId));
+    }
+
+}
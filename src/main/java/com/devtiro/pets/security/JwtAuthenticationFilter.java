@@ -7,6 +7,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -16,6 +17,7 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @Slf4j
 @Component
@@ -24,6 +26,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
+
+    /**
+     * When true the principal is built from the access token claims alone,
+     * otherwise the user is looked up on every request
+     */
+    @Value("${security.authentication.claims-only:false}")
+    private boolean claimsOnly;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -32,36 +42,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             var jwt = getJwtFromRequest(request);
 
             if (StringUtils.hasText(jwt)) {
-                // Check if token is expired first (faster check)
-                if (jwtService.isTokenExpired(jwt)) {
-                    String ipAddress = getClientIP(request);
-                    log.debug("JWT token is expired for request: {}, with IP Address: {}", request.getRequestURI(), ipAddress);
-
-                    filterChain.doFilter(request, response);
-                    return;
-                }
+                // Verify signature and expiration and parse the claims in a single pass
+                Optional<JwtClaims> claims = jwtService.verifyToken(jwt);
 
-                // Validate token signature and structure
-                if (jwtService.validateToken(jwt)) {
-                    var email = jwtService.getEmailFromToken(jwt);
-                    User user = (User) userDetailsService.loadUserByUsername(email);
+                if (claims.isPresent()) {
+                    AuthenticatedUser principal = claimsOnly && claims.get().hasPrincipalClaims()
+                            ? authenticateFromClaims(claims.get())
+                            : authenticateFromUser(claims.get());
 
-                    if (user != null && email.equals(user.getEmail()) && user.isEnabled()) {
+                    if (principal != null) {
                         UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                                user,
+                                principal,
                                 null,
-                                user.getAuthorities()
+                                principal.getAuthorities()
                         );
                         authentication.setDetails(
                                 new WebAuthenticationDetailsSource().buildDetails(request)
                         );
                         SecurityContextHolder.getContext().setAuthentication(authentication);
-                    } else {
-                        log.warn("User not found or disabled: {}", email);
                     }
                 } else {
                     String ipAddress = getClientIP(request);
-                    log.debug("Invalid JWT token for request: {}, IP Address: {}", request.getRequestURI(), ipAddress);
+                    log.debug("Invalid or expired JWT token for request: {}, IP Address: {}", request.getRequestURI(), ipAddress);
                 }
             }
 
@@ -73,6 +75,36 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Claims-only mode: the principal is built from the verified token, no user lookup.
+     * Logouts and disabled or locked accounts are enforced through the revocation set.
+     */
+    private AuthenticatedUser authenticateFromClaims(JwtClaims claims) {
+        if (tokenRevocationService.isRevoked(claims.userId(), claims.issuedAt())) {
+            log.debug("Revoked JWT token for user: {}", claims.email());
+            return null;
+        }
+        return AuthenticatedUser.from(claims);
+    }
+
+    /**
+     * Lookup mode: the user is loaded (through the usersByEmail cache) and its account state checked.
+     */
+    private AuthenticatedUser authenticateFromUser(JwtClaims claims) {
+        var email = claims.email();
+        User user = (User) userDetailsService.loadUserByUsername(email);
+
+        if (user == null || !email.equals(user.getEmail()) || !user.isEnabled() || !user.isAccountNonLocked()) {
+            log.warn("User not found or disabled: {}", email);
+            return null;
+        }
+        if (tokenRevocationService.isRevoked(user.getId(), claims.issuedAt())) {
+            log.debug("Revoked JWT token for user: {}", email);
+            return null;
+        }
+        return AuthenticatedUser.from(user);
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         var bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
@@ -83,14 +115,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     /**
      * Extract client IP address from request
-     * Handles X-Forwarded-For header for proxied requests
+     * X-Forwarded-For is applied by Tomcat (server.forward-headers-strategy) and only from trusted proxies,
+     * a header sent by the client itself could be set to anything
      */
     private String getClientIP(HttpServletRequest request) {
-        String xForwardedForHeader = request.getHeader("X-Forwarded-For");
-        if (xForwardedForHeader == null || xForwardedForHeader.isEmpty()) {
-            return request.getRemoteAddr();
-        }
-        // X-Forwarded-For can contain multiple IPs, first one is the client
-        return xForwardedForHeader.split(",")[0].trim();
+        return request.getRemoteAddr();
     }
 }
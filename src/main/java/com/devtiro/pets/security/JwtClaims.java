@@ -0,0 +1,38 @@
+package com.devtiro.pets.security;
+
+import com.devtiro.pets.domain.entity.Role;
+
+import java.time.Instant;
+
+/**
+ * Claims of a JWT whose signature and expiration have already been verified.
+ *
+ * @param email     token subject
+ * @param userId    id of the user
+ * @param username  username claim, only present on access tokens
+ * @param role      role claim, only present on access tokens
+ * @param type      "access" or "refresh"
+ * @param issuedAt  issue time of the token, to the millisecond on access tokens
+ * @param expiresAt expiration of the token
+ * @param tokenId   jti, only present on refresh tokens
+ */
+public record JwtClaims(String email, String userId, String username, Role role, String type,
+                        Instant issuedAt, Instant expiresAt, String tokenId) {
+
+    public boolean isAccessToken() {
+        return "access".equals(type);
+    }
+
+    public boolean isRefreshToken() {
+        return "refresh".equals(type);
+    }
+
+    /**
+     * Whether the token carries everything needed to build the principal without a user lookup.
+     * Access tokens issued before the user id claim was added do not.
+     */
+    public boolean hasPrincipalClaims() {
+        return isAccessToken() && userId != null && username != null && role != null;
+    }
+
+}
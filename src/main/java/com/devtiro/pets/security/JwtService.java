@@ -1,9 +1,16 @@
 package com.devtiro.pets.security;
 
+import com.devtiro.pets.domain.entity.Role;
 import com.devtiro.pets.domain.entity.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,14 +18,29 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.Map;
-
+import java.util.Optional;
+
+/**
+ * Issues and verifies JWTs.
+ * The signing key and the parser are created once at startup, and every token is verified and
+ * parsed in a single step into {@link JwtClaims}. Verified tokens are kept in a small cache keyed
+ * by the token's SHA-256 digest until their own expiration, so repeat requests skip the crypto.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class JwtService {
 
+    private final MeterRegistry meterRegistry;
+
     @Value("${jwt.secret:404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970}")
     private String secretKey;
 
@@ -30,14 +52,42 @@ public class JwtService {
     @Value("${jwt.refresh-token-expiration}")
     private long jwtRefreshTokenExpirationMs;
 
+    @Value("${jwt.verified-token-cache-size:10000}")
+    private long verifiedTokenCacheSize;
+
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+    private Cache<String, JwtClaims> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedTokenCacheSize)
+                // An entry never outlives the token it was verified from
+                .expireAfter(Expiry.creating((String digest, JwtClaims claims) -> {
+                    Duration remaining = Duration.between(Instant.now(), claims.expiresAt());
+                    return remaining.isNegative() ? Duration.ZERO : remaining;
+                }))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "verifiedTokens");
+    }
+
     public String generateAccessToken(User user) {
         var now = new Date();
         var expiryDate = new Date(now.getTime() + jwtAccessTokenExpirationMs);
 
         Map<String, Object> extraClaims = Map.of(
+                "uid", user.getId(),
                 "username", user.getUsername(),
                 "role", user.getRole().name(),
-                "type", "access"
+                "type", "access",
+                // iat has second precision, revocation checks compare against the exact issue time
+                "iat_ms", now.getTime()
         );
 
         return Jwts.builder()
@@ -45,104 +95,84 @@ public class JwtService {
                 .claims(extraClaims)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
     /**
      * Generate refresh token for user
+     *
+     * @param tokenId jti of the token, the key it is stored under in the {@link RefreshTokenStore}
      */
-    public String generateRefreshToken(User user) {
+    public String generateRefreshToken(User user, String tokenId) {
         var now = new Date();
         var expiryDate = new Date(now.getTime() + jwtRefreshTokenExpirationMs);
 
         return Jwts.builder()
+                .id(tokenId)
                 .subject(user.getEmail())
+                .claim("uid", user.getId())
                 .claim("type", "refresh")
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
-    public boolean validateToken(String token) {
+    /**
+     * Verify the token signature and expiration and parse its claims, in one pass.
+     *
+     * @return the verified claims, or empty if the token is invalid or expired
+     */
+    public Optional<JwtClaims> verifyToken(String token) {
+        String digest = digest(token);
+        JwtClaims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
-            return true;
-        } catch (SecurityException ex) {
-            log.error("Invalid JWT signature");
+            Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+            String role = claims.get("role", String.class);
+            Number issuedAtMs = claims.get("iat_ms", Number.class);
+            Instant issuedAt = issuedAtMs != null ? Instant.ofEpochMilli(issuedAtMs.longValue())
+                    : claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null;
+            JwtClaims verified = new JwtClaims(
+                    claims.getSubject(),
+                    claims.get("uid", String.class),
+                    claims.get("username", String.class),
+                    role != null ? Role.valueOf(role) : null,
+                    claims.get("type", String.class),
+                    issuedAt,
+                    claims.getExpiration().toInstant(),
+                    claims.getId()
+            );
+            verifiedTokens.put(digest, verified);
+            return Optional.of(verified);
+        } catch (ExpiredJwtException ex) {
+            log.debug("Expired JWT token");
         } catch (MalformedJwtException ex) {
             log.error("Invalid JWT token");
-        } catch (ExpiredJwtException ex) {
-            log.error("Expired JWT token");
         } catch (UnsupportedJwtException ex) {
             log.error("Unsupported JWT token");
+        } catch (JwtException ex) {
+            log.error("Invalid JWT signature");
         } catch (IllegalArgumentException ex) {
-            log.error("JWT claims string is empty");
-        }
-        return false;
-    }
-
-    /**
-     * Get email from token
-     */
-    public String getEmailFromToken(String token) {
-        var claims = Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-
-        return claims.getSubject();
-    }
-
-    /**
-     * Validate if token is a refresh token
-     */
-    public boolean isRefreshToken(String token) {
-        try {
-            Claims claims = Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
-
-            String type = claims.get("type", String.class);
-            return "refresh".equals(type);
-        } catch (Exception e) {
-            log.error("Error checking token type: {}", e.getMessage());
-            return false;
+            log.error("JWT claims string is empty or has invalid claims");
         }
+        return Optional.empty();
     }
 
-
     /**
-     * Check if token is expired
+     * SHA-256 of the token, Base64 encoded. Used as cache key and to store refresh tokens without the token itself.
      */
-    public boolean isTokenExpired(String token) {
+    public static String digest(String token) {
         try {
-            Claims claims = Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
-
-            return claims.getExpiration().before(new Date());
-        } catch (ExpiredJwtException e) {
-            return true;
-        } catch (Exception e) {
-            log.error("Error checking token expiration: {}", e.getMessage());
-            return true;
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
     }
 
-
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-
 }
@@ -0,0 +1,232 @@
+package com.devtiro.pets.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory login throttling, checked before the AuthenticationManager so rejected attempts
+ * cost neither a BCrypt check nor an Elasticsearch lookup.
+ * - Per IP: every attempt counts, over the limit the IP gets 429 until the window slides past.
+ * - Per account (email): failed attempts count, over the limit the account is locked for the lockout duration.
+ * Counters are sliding windows of time buckets updated with CAS only, no locks on the login path.
+ * Both key maps are Caffeine caches with a maximum size and expire after the window, so memory stays
+ * bounded however many distinct IPs or emails are seen; under a flood the least used keys are evicted first.
+ * Metric: auth.login.throttled, tagged by reason (ip, account).
+ */
+@Slf4j
+@Component
+public class LoginThrottle {
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int buckets;
+    private final int maxAttemptsPerIp;
+    private final long ipBucketMillis;
+    private final int maxFailuresPerAccount;
+    private final long accountBucketMillis;
+    private final Duration lockoutDuration;
+    private final Cache<String, SlidingWindow> ipAttempts;
+    private final Cache<String, AccountState> accountFailures;
+
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         @Value("${security.login-throttle.enabled:true}") boolean enabled,
+                         @Value("${security.login-throttle.buckets:6}") int buckets,
+                         @Value("${security.login-throttle.max-keys:100000}") long maxKeys,
+                         @Value("${security.login-throttle.ip.max-attempts:30}") int maxAttemptsPerIp,
+                         @Value("${security.login-throttle.ip.window:1m}") Duration ipWindow,
+                         @Value("${security.login-throttle.account.max-failures:5}") int maxFailuresPerAccount,
+                         @Value("${security.login-throttle.account.window:15m}") Duration accountWindow,
+                         @Value("${security.login-throttle.account.lockout-duration:15m}") Duration lockoutDuration) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.buckets = buckets;
+        this.maxAttemptsPerIp = maxAttemptsPerIp;
+        this.ipBucketMillis = Math.max(1, ipWindow.toMillis() / buckets);
+        this.maxFailuresPerAccount = maxFailuresPerAccount;
+        this.accountBucketMillis = Math.max(1, accountWindow.toMillis() / buckets);
+        this.lockoutDuration = lockoutDuration;
+        this.ipAttempts = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(ipWindow)
+                .build();
+        // A locked account has to outlive its failure window until the lockout is over
+        this.accountFailures = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(accountWindow.compareTo(lockoutDuration) > 0 ? accountWindow : lockoutDuration)
+                .build();
+    }
+
+    /**
+     * Count an attempt of the IP and check whether the IP or the account may try now
+     *
+     * @return empty when the attempt may go ahead, otherwise how long the caller has to wait
+     */
+    public Optional<Rejection> tryAcquire(String ipAddress, String email) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long now = System.currentTimeMillis();
+
+        AccountState account = accountFailures.getIfPresent(keyOf(email));
+        if (account != null && account.lockedUntil.get() > now) {
+            meterRegistry.counter("auth.login.throttled", "reason", "account").increment();
+            return Optional.of(new Rejection(Reason.ACCOUNT, Duration.ofMillis(account.lockedUntil.get() - now)));
+        }
+
+        SlidingWindow attempts = ipAttempts.get(ipAddress, ip -> new SlidingWindow(buckets, ipBucketMillis));
+        if (attempts.increment(now) > maxAttemptsPerIp) {
+            meterRegistry.counter("auth.login.throttled", "reason", "ip").increment();
+            log.debug("Login attempts of {} over the limit", ipAddress);
+            return Optional.of(new Rejection(Reason.IP, Duration.ofMillis(attempts.retryAfter(now))));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Count a failed attempt of the account
+     *
+     * @return the end of the lockout when this failure locked the account, empty otherwise.
+     * Concurrent failures lock the account once, only one caller gets the lockout end.
+     */
+    public Optional<Instant> recordFailure(String email) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long now = System.currentTimeMillis();
+        AccountState account = accountFailures.get(keyOf(email), key -> new AccountState(buckets, accountBucketMillis));
+        if (account.failures.increment(now) < maxFailuresPerAccount) {
+            return Optional.empty();
+        }
+        long current = account.lockedUntil.get();
+        long until = now + lockoutDuration.toMillis();
+        if (current > now || !account.lockedUntil.compareAndSet(current, until)) {
+            return Optional.empty();
+        }
+        account.failures.clear();
+        return Optional.of(Instant.ofEpochMilli(until));
+    }
+
+    /**
+     * Mark the account as locked until the given time, e.g. a lockout persisted before a restart
+     */
+    public void lock(String email, Instant until) {
+        if (enabled) {
+            accountFailures.get(keyOf(email), key -> new AccountState(buckets, accountBucketMillis))
+                    .lockedUntil.accumulateAndGet(until.toEpochMilli(), Math::max);
+        }
+    }
+
+    /**
+     * Forget the failures of the account after a successful login
+     */
+    public void recordSuccess(String email) {
+        accountFailures.invalidate(keyOf(email));
+    }
+
+    // Emails are case-insensitive here so changing the case does not get a fresh window
+    private static String keyOf(String email) {
+        return email == null ? "" : email.toLowerCase(Locale.ROOT);
+    }
+
+    public enum Reason {
+        IP, ACCOUNT
+    }
+
+    public record Rejection(Reason reason, Duration retryAfter) {
+    }
+
+    private static final class AccountState {
+        private final SlidingWindow failures;
+        private final AtomicLong lockedUntil = new AtomicLong();
+
+        private AccountState(int buckets, long bucketMillis) {
+            this.failures = new SlidingWindow(buckets, bucketMillis);
+        }
+    }
+
+    /**
+     * Ring of time buckets, each slot packs the bucket's epoch (upper bits) and its count (lower bits)
+     * into one long, so a slot is moved to a new bucket and counted in a single CAS.
+     * The window is the current bucket plus the previous buckets - 1, which slides in bucket steps.
+     */
+    static final class SlidingWindow {
+
+        private static final int countBits = 20;
+        private static final long countMask = (1L << countBits) - 1;
+
+        private final AtomicLongArray slots;
+        private final long bucketMillis;
+
+        SlidingWindow(int buckets, long bucketMillis) {
+            this.slots = new AtomicLongArray(buckets);
+            this.bucketMillis = bucketMillis;
+        }
+
+        /**
+         * Count one event at the given time
+         *
+         * @return the number of events in the window, this one included
+         */
+        long increment(long nowMillis) {
+            long epoch = nowMillis / bucketMillis;
+            int slot = (int) (epoch % slots.length());
+            long previous;
+            long next;
+            do {
+                previous = slots.get(slot);
+                if (previous >>> countBits == epoch) {
+                    // The count saturates instead of overflowing into the epoch
+                    next = (previous & countMask) == countMask ? previous : previous + 1;
+                } else {
+                    next = epoch << countBits | 1;
+                }
+            } while (!slots.compareAndSet(slot, previous, next));
+            return sum(epoch);
+        }
+
+        /**
+         * Time until the oldest bucket holding events leaves the window
+         */
+        long retryAfter(long nowMillis) {
+            long epoch = nowMillis / bucketMillis;
+            long oldest = epoch;
+            for (int i = 0; i < slots.length(); i++) {
+                long value = slots.get(i);
+                long slotEpoch = value >>> countBits;
+                if ((value & countMask) > 0 && slotEpoch > epoch - slots.length() && slotEpoch < oldest) {
+                    oldest = slotEpoch;
+                }
+            }
+            return (oldest + slots.length()) * bucketMillis - nowMillis;
+        }
+
+        void clear() {
+            for (int i = 0; i < slots.length(); i++) {
+                slots.set(i, 0);
+            }
+        }
+
+        private long sum(long epoch) {
+            long total = 0;
+            for (int i = 0; i < slots.length(); i++) {
+                long value = slots.get(i);
+                if (value >>> countBits > epoch - slots.length()) {
+                    total += value & countMask;
+                }
+            }
+            return total;
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.devtiro.pets.security;
+
+import com.devtiro.pets.domain.entity.RefreshToken;
+
+import java.util.Optional;
+
+/**
+ * Storage of issued refresh tokens, separate from the user document so issuing and rotating
+ * a token is a small write of its own. Selected with refresh-tokens.store:
+ * "elasticsearch" (default, shared by all instances) or "memory" (single node).
+ */
+public interface RefreshTokenStore {
+
+    void save(RefreshToken token);
+
+    /**
+     * @return the token unless it is unknown or expired
+     */
+    Optional<RefreshToken> find(String tokenId);
+
+    /**
+     * Remove the token so it cannot be used again
+     *
+     * @return false if it was already gone, e.g. used by a concurrent refresh
+     */
+    boolean consume(String tokenId);
+
+    /**
+     * Remove every token of the user, on all devices
+     */
+    void deleteAllForUser(String userId);
+
+}
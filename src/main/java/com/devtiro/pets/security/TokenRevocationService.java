@@ -0,0 +1,65 @@
+package com.devtiro.pets.security;
+
+import com.devtiro.pets.repositories.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Compact in-memory revocation set for access tokens.
+ * Stores only "user id -> revoked at" pairs. Every access token of the user issued before
+ * that moment is rejected. An entry only has to live as long as an access token does, after that
+ * every token it could reject has expired on its own, so the set stays small.
+ * Used on logout and when an account is disabled or locked.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    private final UserRepository userRepository;
+    private final Cache<String, Instant> revokedUsers;
+
+    public TokenRevocationService(UserRepository userRepository,
+                                  @Value("${jwt.access-token-expiration}") long accessTokenExpirationMs) {
+        this.userRepository = userRepository;
+        this.revokedUsers = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(accessTokenExpirationMs))
+                .build();
+    }
+
+    /**
+     * Revoke every access token of the user issued up to now.
+     */
+    public void revokeUser(String userId) {
+        // Not truncated: a token issued in the same second but after the revocation stays valid
+        revokedUsers.put(userId, Instant.now());
+        log.debug("Revoked access tokens of user {}", userId);
+    }
+
+    public boolean isRevoked(String userId, Instant issuedAt) {
+        Instant revokedAt = revokedUsers.getIfPresent(userId);
+        return revokedAt != null && (issuedAt == null || issuedAt.isBefore(revokedAt));
+    }
+
+    /**
+     * Accounts disabled or locked before a restart still hold valid access tokens,
+     * so they are revoked again once the application is up.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void revokeInactiveAccounts() {
+        try {
+            userRepository.findAllByEnabledFalseOrAccountNonLockedFalse()
+                    .forEach(user -> revokeUser(user.getId()));
+        } catch (Exception e) {
+            log.warn("Could not load disabled or locked accounts for token revocation: {}", e.getMessage());
+        }
+    }
+
+}
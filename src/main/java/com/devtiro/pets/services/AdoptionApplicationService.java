@@ -6,7 +6,7 @@ import com.devtiro.pets.domain.dto.AdoptionApplicationUpdateRequest;
 import com.devtiro.pets.domain.dto.AdoptionApplicationUpdateStatusRequest;
 import com.devtiro.pets.domain.entity.AdoptionApplication;
 import com.devtiro.pets.domain.entity.AdoptionApplicationStatus;
-import com.devtiro.pets.domain.entity.User;
+import com.devtiro.pets.security.AuthenticatedUser;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -16,15 +16,15 @@ public interface AdoptionApplicationService {
      * Create a new adoption application
      * Can be saved as draft or submitted
      */
-    AdoptionApplicationDto createApplication(AdoptionApplicationCreateRequest request, User applicant);
+    AdoptionApplicationDto createApplication(AdoptionApplicationCreateRequest request, AuthenticatedUser applicant);
 
-    AdoptionApplicationDto updateApplication(String applicationId, AdoptionApplicationUpdateRequest request, User applicant);
+    AdoptionApplicationDto updateApplication(String applicationId, AdoptionApplicationUpdateRequest request, AuthenticatedUser applicant);
 
-    AdoptionApplicationDto submitApplication(String applicationId, User applicant);
+    AdoptionApplicationDto submitApplication(String applicationId, AuthenticatedUser applicant);
 
-    AdoptionApplicationDto getApplicationById(String applicationId, User userPrincipal);
+    AdoptionApplicationDto getApplicationById(String applicationId, AuthenticatedUser userPrincipal);
 
-    Page<AdoptionApplicationDto> getMyApplications(User applicant, Pageable pageable);
+    Page<AdoptionApplicationDto> getMyApplications(AuthenticatedUser applicant, Pageable pageable);
 
     Page<AdoptionApplicationDto> getApplicationsForPet(String petId, Pageable pageable);
 
@@ -32,16 +32,16 @@ public interface AdoptionApplicationService {
 
     Page<AdoptionApplicationDto> getApplicationsByStatus(AdoptionApplicationStatus status, Pageable pageable);
 
-    AdoptionApplicationDto updateApplicationStatus(String applicationId, AdoptionApplicationUpdateStatusRequest request, User staff);
+    AdoptionApplicationDto updateApplicationStatus(String applicationId, AdoptionApplicationUpdateStatusRequest request, AuthenticatedUser staff);
 
     /**
      * Withdraw an application (USER only, must be submitter)
      */
-    AdoptionApplicationDto withdrawApplication(String applicationId, User applicant);
+    AdoptionApplicationDto withdrawApplication(String applicationId, AuthenticatedUser applicant);
 
     /**
      * Delete a draft application (USER only, must be submitter)
      */
-    void deleteApplication(String applicationId, User applicant);
+    void deleteApplication(String applicationId, AuthenticatedUser applicant);
 
 }
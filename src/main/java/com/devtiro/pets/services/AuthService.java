@@ -3,23 +3,38 @@ package com.devtiro.pets.services;
 import com.devtiro.pets.domain.dto.security.AuthResponse;
 import com.devtiro.pets.domain.dto.security.LoginRequest;
 import com.devtiro.pets.domain.dto.security.RegisterRequest;
+import com.devtiro.pets.domain.entity.RefreshToken;
 import com.devtiro.pets.domain.entity.User;
+import com.devtiro.pets.exceptions.AccountLockedException;
 import com.devtiro.pets.exceptions.InvalidRefreshTokenException;
+import com.devtiro.pets.exceptions.LoginThrottledException;
 import com.devtiro.pets.exceptions.UserAccountDisabledException;
 import com.devtiro.pets.exceptions.UserAccountLockedException;
-import com.devtiro.pets.exceptions.UserAlreadyExistsException;
 import com.devtiro.pets.repositories.UserRepository;
+import com.devtiro.pets.security.AuthenticatedUser;
+import com.devtiro.pets.security.CustomUserDetailsService;
+import com.devtiro.pets.security.JwtClaims;
 import com.devtiro.pets.security.JwtService;
+import com.devtiro.pets.security.LoginThrottle;
+import com.devtiro.pets.security.RefreshTokenStore;
+import com.devtiro.pets.security.TokenRevocationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.LockedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
 
 /**
  * Service handling user authentication operations
@@ -33,24 +48,20 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
+    private final TokenRevocationService tokenRevocationService;
+    private final UserReservationService userReservationService;
+    private final RefreshTokenStore refreshTokenStore;
+    private final CustomUserDetailsService userDetailsService;
+    private final LoginThrottle loginThrottle;
 
     /**
      * Register a new user
      */
     public AuthResponse register(RegisterRequest request, String ipAddress) {
 
-        // Check if username already exists
-        if (userRepository.findByUsername(request.getUsername()).isPresent()) {
-            throw new UserAlreadyExistsException("Username already exists");
-        }
-
-        // Check if email already exists
-        if (userRepository.findByEmail(request.getEmail()).isPresent()) {
-            throw new UserAlreadyExistsException("Email already exists");
-        }
-
-        // Create new user
+        // Create new user, the id is assigned upfront because the access token carries it
         User user = User.builder()
+                .id(UUID.randomUUID().toString())
                 .username(request.getUsername())
                 .email(request.getEmail())
                 .password(passwordEncoder.encode(request.getPassword()))
@@ -62,17 +73,20 @@ public class AuthService {
                 .accountNonLocked(true)
                 .build();
 
-        // Generate tokens
-        String accessToken = jwtService.generateAccessToken(user);
-        String refreshToken = jwtService.generateRefreshToken(user);
+        // Username and email are claimed before anything else is done, throws if either is taken
+        userReservationService.reserve(user);
 
-        // Store refresh token in user
-        user.setRefreshToken(refreshToken);
-        user.setRefreshTokenExpiryDate(
-                LocalDateTime.now().plusSeconds(jwtService.getJwtRefreshTokenExpirationMs() / 1000)
-        );
+        try {
+            userRepository.save(user);
+        } catch (RuntimeException e) {
+            userReservationService.release(user);
+            throw e;
+        }
+        userReservationService.confirm(user);
 
-        userRepository.save(user);
+        // Generate tokens
+        String accessToken = jwtService.generateAccessToken(user);
+        String refreshToken = issueRefreshToken(user, ipAddress);
 
         return AuthResponse.builder()
                 .accessToken(accessToken)
@@ -88,112 +102,169 @@ public class AuthService {
 
     /**
      * Authenticate and login a user
+     * Throttled IPs and locked out accounts are rejected before the password is checked
      */
     public AuthResponse login(LoginRequest request, String ipAddress) {
-        try {
-            // Authenticate user credentials
-            authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            request.getEmail(),
-                            request.getPassword()
-                    )
-            );
-
-            // Retrieve user from database
-            User user = userRepository.findByEmail(request.getEmail())
-                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-            // Check if account is enabled
-            if (!user.isEnabled()) {
-                throw new UserAccountDisabledException("Account is disabled");
+        loginThrottle.tryAcquire(ipAddress, request.getEmail()).ifPresent(rejection -> {
+            if (rejection.reason() == LoginThrottle.Reason.ACCOUNT) {
+                throw lockedOut(rejection.retryAfter());
             }
+            throw new LoginThrottledException("Too many login attempts, try again later", rejection.retryAfter());
+        });
 
-            // Check if account is locked
-            if (!user.isAccountNonLocked()) {
-                throw new UserAccountLockedException("Account is locked");
+        try {
+            try {
+                authenticate(request);
+            } catch (LockedException e) {
+                // A lockout that is over is lifted on the next login, then the credentials are checked again
+                unlockExpiredLockout(request.getEmail());
+                authenticate(request);
             }
+        } catch (AuthenticationException e) {
+            recordFailedLogin(request.getEmail());
+            throw new IllegalArgumentException("Invalid username or password");
+        }
+        loginThrottle.recordSuccess(request.getEmail());
 
-            String accessToken = jwtService.generateAccessToken(user);
-            String refreshToken = jwtService.generateRefreshToken(user);
+        // Retrieve user from database
+        User user = userRepository.findByEmail(request.getEmail())
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
-            // Store refresh token in user
-            user.setRefreshToken(refreshToken);
-            user.setRefreshTokenExpiryDate(
-                    LocalDateTime.now().plusSeconds(jwtService.getJwtRefreshTokenExpirationMs() / 1000)
-            );
+        // Check if account is enabled
+        if (!user.isEnabled()) {
+            throw new UserAccountDisabledException("Account is disabled");
+        }
 
-            userRepository.save(user);
+        // Check if account is locked
+        if (!user.isAccountNonLocked()) {
+            throw new UserAccountLockedException("Account is locked");
+        }
 
-            return AuthResponse.builder()
-                    .accessToken(accessToken)
-                    .refreshToken(refreshToken)
-                    .username(user.getUsername())
-                    .email(user.getEmail())
-                    .role(user.getRole())
-                    .message("Login successful")
-                    .expiresIn(jwtService.getJwtAccessTokenExpirationMs())
-                    .refreshExpiresIn(jwtService.getJwtRefreshTokenExpirationMs())
-                    .build();
+        // A new refresh token per login, tokens of the user's other devices stay valid
+        String accessToken = jwtService.generateAccessToken(user);
+        String refreshToken = issueRefreshToken(user, ipAddress);
 
-        } catch (AuthenticationException e) {
-            throw new IllegalArgumentException("Invalid username or password");
+        return AuthResponse.builder()
+                .accessToken(accessToken)
+                .refreshToken(refreshToken)
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .role(user.getRole())
+                .message("Login successful")
+                .expiresIn(jwtService.getJwtAccessTokenExpirationMs())
+                .refreshExpiresIn(jwtService.getJwtRefreshTokenExpirationMs())
+                .build();
+    }
+
+    private void authenticate(LoginRequest request) {
+        authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(
+                        request.getEmail(),
+                        request.getPassword()
+                )
+        );
+    }
+
+    /**
+     * Count a failed login, the failure that reaches the limit locks the account for the lockout duration
+     * and revokes its access tokens
+     */
+    private void recordFailedLogin(String email) {
+        loginThrottle.recordFailure(email).ifPresent(until -> {
+            log.warn("Too many failed logins for {}, locked until {}", email, until);
+            try {
+                LocalDateTime lockedUntil = LocalDateTime.ofInstant(until, ZoneId.systemDefault())
+                        .truncatedTo(ChronoUnit.MILLIS);
+                userDetailsService.lockAccount(email, lockedUntil)
+                        .ifPresent(user -> tokenRevocationService.revokeUser(user.getId()));
+            } catch (RuntimeException e) {
+                // The in-memory lockout still holds on this instance
+                log.error("Could not store the lockout of {}", email, e);
+            }
+        });
+    }
+
+    /**
+     * Unlock the account when it was locked by a lockout that is over.
+     * A lockout still running is taken into the throttle, it is lost from memory on a restart.
+     * Accounts locked by staff have no lockout end and stay locked.
+     */
+    private void unlockExpiredLockout(String email) {
+        User user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid username or password"));
+        if (user.getLockedUntil() == null) {
+            throw new UserAccountLockedException("Account is locked");
         }
+        Instant lockedUntil = user.getLockedUntil().atZone(ZoneId.systemDefault()).toInstant();
+        if (lockedUntil.isAfter(Instant.now())) {
+            loginThrottle.lock(email, lockedUntil);
+            throw lockedOut(Duration.between(Instant.now(), lockedUntil));
+        }
+        // The revocation entry stays: no token was issued while locked, and older ones must stay revoked
+        userDetailsService.unlockAccount(user);
+        log.info("Lockout of user {} is over, account unlocked", user.getId());
+    }
+
+    private static AccountLockedException lockedOut(Duration remaining) {
+        long minutes = Math.max(1, (remaining.toSeconds() + 59) / 60);
+        return new AccountLockedException(
+                "Account is locked after too many failed logins, try again in " + minutes + " minute(s)");
     }
 
     /**
      * Refresh access token using refresh token
+     * The refresh token is rotated: the used one is consumed from the store and a new one issued,
+     * the user document is not written
      */
-    @CacheEvict(value = "usersByEmail", key = "#result.email")
     public AuthResponse refreshToken(String refreshToken, String ipAddress) {
         try {
-            // Validate refresh token
-            if (!jwtService.validateToken(refreshToken)) {
-                throw new InvalidRefreshTokenException(
-                        "Invalid or expired refresh token"
-                );
-            }
+            // Verify and parse the refresh token once
+            JwtClaims claims = jwtService.verifyToken(refreshToken)
+                    .orElseThrow(() -> new InvalidRefreshTokenException(
+                            "Invalid or expired refresh token"
+                    ));
 
             // Verify it's actually a refresh token
-            if (!jwtService.isRefreshToken(refreshToken)) {
+            if (!claims.isRefreshToken() || claims.tokenId() == null) {
                 throw new InvalidRefreshTokenException(
                         "Token is not a refresh token"
                 );
             }
 
-            // Get user email from token
-            String email = jwtService.getEmailFromToken(refreshToken);
-
-            // Find user
-            User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-            // Verify the refresh token matches the one stored in database
-            if (user.getRefreshToken() == null || !user.getRefreshToken().equals(refreshToken)) {
+            // Verify the refresh token is the one issued under its id and has not been used or revoked
+            RefreshToken stored = refreshTokenStore.find(claims.tokenId())
+                    .orElseThrow(() -> new InvalidRefreshTokenException(
+                            "Refresh token has expired or been revoked"
+                    ));
+            if (!MessageDigest.isEqual(
+                    stored.getTokenHash().getBytes(StandardCharsets.US_ASCII),
+                    JwtService.digest(refreshToken).getBytes(StandardCharsets.US_ASCII))) {
                 throw new InvalidRefreshTokenException(
                         "Refresh token does not match"
                 );
             }
 
-            // Check if refresh token has expired in database
-            if (user.getRefreshTokenExpiryDate() != null &&
-                    jwtService.isTokenExpired(refreshToken)) {
+            // Find user, the user document no longer changes on refresh so the cached one is used
+            User user = (User) userDetailsService.loadUserByUsername(claims.email());
+
+            // Disabled or locked accounts must not get new tokens
+            if (!user.isEnabled()) {
+                throw new UserAccountDisabledException("Account is disabled");
+            }
+            if (!user.isAccountNonLocked()) {
+                throw new UserAccountLockedException("Account is locked");
+            }
+
+            // Only one of two concurrent refreshes with the same token gets to rotate it
+            if (!refreshTokenStore.consume(stored.getId())) {
                 throw new InvalidRefreshTokenException(
-                        "Refresh token has expired"
+                        "Refresh token has already been used"
                 );
             }
 
-            // Generate new access token
+            // Generate new access token and rotate the refresh token
             String newAccessToken = jwtService.generateAccessToken(user);
-
-            // Optionally rotate refresh token (generate new one)
-            String newRefreshToken = jwtService.generateRefreshToken(user);
-
-            user.setRefreshToken(newRefreshToken);
-            user.setRefreshTokenExpiryDate(
-                    LocalDateTime.now().plusSeconds(jwtService.getJwtRefreshTokenExpirationMs() / 1000)
-            );
-
-            userRepository.save(user);
+            String newRefreshToken = issueRefreshToken(user, ipAddress);
 
             return AuthResponse.builder()
                     .accessToken(newAccessToken)
@@ -215,23 +286,37 @@ public class AuthService {
     }
 
     /**
-     * Logout user by invalidating refresh token
-     * Clears refresh token from database and evicts user from cache
+     * Logout user by invalidating refresh tokens
+     * Removes the user's refresh tokens on all devices and revokes issued access tokens
      *
-     * @param email user's email
+     * @param user the authenticated user
      * @param ipAddress client IP address
      */
-    @CacheEvict(value = "usersByEmail", key = "#email")
-    public void logout(String email, String ipAddress) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+    public void logout(AuthenticatedUser user, String ipAddress) {
+        refreshTokenStore.deleteAllForUser(user.getId());
 
-        // Clear refresh token
-        user.setRefreshToken(null);
-        user.setRefreshTokenExpiryDate(null);
+        // Access tokens issued so far stop working as well
+        tokenRevocationService.revokeUser(user.getId());
 
-        userRepository.save(user);
+        log.info("User logged out successfully: {}", user.getEmail());
+    }
 
-        log.info("User logged out successfully: {}", email);
+    /**
+     * Create a refresh token and store its hash under a new token id
+     */
+    private String issueRefreshToken(User user, String ipAddress) {
+        String tokenId = UUID.randomUUID().toString();
+        String refreshToken = jwtService.generateRefreshToken(user, tokenId);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+        refreshTokenStore.save(RefreshToken.builder()
+                .id(tokenId)
+                .userId(user.getId())
+                .tokenHash(JwtService.digest(refreshToken))
+                .ipAddress(ipAddress)
+                .createdAt(now)
+                .expiresAt(now.plus(jwtService.getJwtRefreshTokenExpirationMs(), ChronoUnit.MILLIS))
+                .build());
+        return refreshToken;
     }
 }
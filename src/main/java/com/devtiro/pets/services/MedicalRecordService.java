@@ -2,7 +2,7 @@ package com.devtiro.pets.services;
 
 import com.devtiro.pets.domain.dto.MedicalRecordDto;
 import com.devtiro.pets.domain.dto.MedicalRecordUpdateRequest;
-import com.devtiro.pets.domain.entity.User;
+import com.devtiro.pets.security.AuthenticatedUser;
 
 import java.util.List;
 
@@ -10,7 +10,7 @@ public interface MedicalRecordService {
 
     List<MedicalRecordDto> getAllMedicalRecordsByPetId(String petId);
 
-    MedicalRecordDto addMedicalRecord(String petId, MedicalRecordUpdateRequest request, User staff);
+    MedicalRecordDto addMedicalRecord(String petId, MedicalRecordUpdateRequest request, AuthenticatedUser staff);
 
     MedicalRecordDto updateMedicalRecord(String medicalRecordId, MedicalRecordUpdateRequest request);
 
@@ -0,0 +1,154 @@
+package com.devtiro.pets.services;
+
+import com.devtiro.pets.domain.entity.PendingNotification;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Sends notification emails on a small dedicated pool instead of the shared @Async executor,
+ * so a slow SMTP server ties up at most these threads and a bounded queue.
+ * Every task is a batch of outbox entries sent with one JavaMailSender.send call, which reuses
+ * one SMTP connection for the whole batch. A full queue rejects the batch, its entries stay in the
+ * outbox and are picked up again, so nothing is dropped.
+ * On shutdown queued batches are drained for up to the drain timeout.
+ * Metrics: notifications.queue, notifications.send (tag outcome), notifications.failed (tag type), notifications.claim.expired,
+ * and the executor metrics of "notifications".
+ */
+@Slf4j
+@Service
+public class NotificationExecutor {
+
+    private final JavaMailSender mailSender;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final Duration drainTimeout;
+
+    public NotificationExecutor(JavaMailSender mailSender,
+                                MeterRegistry meterRegistry,
+                                @Value("${notifications.executor.threads:2}") int threads,
+                                @Value("${notifications.executor.queue-capacity:4}") int queueCapacity,
+                                @Value("${notifications.executor.drain-timeout:30s}") Duration drainTimeout) {
+        this.mailSender = mailSender;
+        this.meterRegistry = meterRegistry;
+        this.drainTimeout = drainTimeout;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("notification-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "notifications", List.of()).bindTo(meterRegistry);
+    }
+
+    /**
+     * Whether a batch submitted now would be queued
+     */
+    public boolean hasCapacity() {
+        return !executor.isShutdown() && executor.getQueue().remainingCapacity() > 0;
+    }
+
+    /**
+     * Send the batch over one SMTP connection.
+     * Entries whose claim would run out before a batch of this size can be sent are dropped instead,
+     * another dispatch may already have claimed them again.
+     *
+     * @param maxSendTime worst-case time to send a whole batch
+     * @return the entries sent (or attempted) and the failed ones among them by id
+     * @throws RejectedExecutionException when the queue is full or the executor is shutting down
+     */
+    public CompletableFuture<SendResult> send(List<PendingNotification> batch, Duration maxSendTime) {
+        long submittedAt = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> sendNow(batch, maxSendTime, submittedAt), executor);
+    }
+
+    private SendResult sendNow(List<PendingNotification> claimed, Duration maxSendTime, long submittedAt) {
+        long startedAt = System.nanoTime();
+        meterRegistry.timer("notifications.queue").record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+
+        LocalDateTime sendBy = LocalDateTime.now().plus(maxSendTime);
+        List<PendingNotification> batch = claimed.stream()
+                .filter(notification -> notification.getNextAttemptAt().isAfter(sendBy))
+                .toList();
+        if (batch.size() < claimed.size()) {
+            meterRegistry.counter("notifications.claim.expired").increment(claimed.size() - batch.size());
+            log.warn("Dropped {} notifications whose claim runs out before they could be sent, they are claimed again",
+                    claimed.size() - batch.size());
+        }
+        if (batch.isEmpty()) {
+            return new SendResult(batch, Map.of());
+        }
+
+        SimpleMailMessage[] messages = batch.stream()
+                .map(NotificationExecutor::toMessage)
+                .toArray(SimpleMailMessage[]::new);
+        Map<String, Exception> failures = new HashMap<>();
+        try {
+            mailSender.send(messages);
+        } catch (MailSendException e) {
+            // Lists the messages that failed, all of them when the connection could not be opened
+            Map<Object, Exception> failed = e.getFailedMessages();
+            for (int i = 0; i < messages.length; i++) {
+                if (failed.isEmpty() || failed.containsKey(messages[i])) {
+                    failures.put(batch.get(i).getId(), failed.getOrDefault(messages[i], e));
+                }
+            }
+        } catch (MailException e) {
+            batch.forEach(notification -> failures.put(notification.getId(), e));
+        }
+
+        meterRegistry.timer("notifications.send", "outcome", failures.isEmpty() ? "sent" : "failed")
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        batch.stream()
+                .filter(notification -> failures.containsKey(notification.getId()))
+                .forEach(notification -> meterRegistry.counter("notifications.failed", "type", notification.getType()).increment());
+        log.info("Sent {} of {} notifications", batch.size() - failures.size(), batch.size());
+        return new SendResult(batch, failures);
+    }
+
+    /**
+     * Stop taking batches and drain the queue, entries of batches still queued after the drain timeout
+     * stay in the outbox and are sent after the restart
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(drainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Runnable> queued = executor.shutdownNow();
+        log.warn("Notification queue not drained in {}, {} batches left in the outbox", drainTimeout, queued.size());
+    }
+
+    /**
+     * @param attempted the entries the send was attempted for, entries dropped for an expired claim are not included
+     * @param failures  the failed entries among them by id, empty when all were sent
+     */
+    public record SendResult(List<PendingNotification> attempted, Map<String, Exception> failures) {
+    }
+
+    private static SimpleMailMessage toMessage(PendingNotification notification) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(notification.getRecipient().split(","));
+        message.setSubject(notification.getSubject());
+        message.setText(notification.getText());
+        return message;
+    }
+
+}
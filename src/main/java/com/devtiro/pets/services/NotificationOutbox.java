@@ -0,0 +1,260 @@
+package com.devtiro.pets.services;
+
+import com.devtiro.pets.domain.entity.PendingNotification;
+import com.devtiro.pets.repositories.PendingNotificationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+import org.springframework.data.elasticsearch.VersionConflictException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Outbox for notification emails in the pending_notifications index.
+ * Callers only write the entry, the email is sent by a scheduled dispatcher, so their latency does not
+ * depend on SMTP and a failed send is retried instead of lost.
+ * The dispatcher claims a batch of due entries (pushing their due time out by the claim timeout, with
+ * _seq_no checks so two instances never claim the same entry) and sends it on the notification executor.
+ * The claim must outlast the wait behind the batches ahead in the executor plus the send itself, so the claim timeout
+ * is at least (queued batches per thread + 1) x the worst-case batch time from the SMTP timeouts. The result is
+ * written with the _seq_no of the claim, it never overwrites an entry claimed again in the meantime.
+ * Failed entries are retried with exponential backoff up to the maximum attempts, then marked FAILED.
+ * Sent entries are kept for the retention period so their deduplication keys still apply.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NotificationOutbox {
+
+    private final PendingNotificationRepository pendingNotificationRepository;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final NotificationExecutor notificationExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${notifications.outbox.batch-size:50}")
+    private int batchSize;
+
+    // 0 = the minimum from the executor queue and the SMTP timeouts
+    @Value("${notifications.outbox.claim-timeout:0}")
+    private Duration claimTimeout;
+
+    @Value("${notifications.executor.threads:2}")
+    private int executorThreads;
+
+    @Value("${notifications.executor.queue-capacity:4}")
+    private int executorQueueCapacity;
+
+    @Value("${spring.mail.properties.mail.smtp.connectiontimeout:10000}")
+    private long smtpConnectionTimeoutMs;
+
+    @Value("${spring.mail.properties.mail.smtp.timeout:10000}")
+    private long smtpTimeoutMs;
+
+    // Worst case of one batch: the connection, then every message up to the read timeout
+    private Duration maxBatchSendTime;
+
+    @Value("${notifications.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${notifications.outbox.initial-backoff:30s}")
+    private Duration initialBackoff;
+
+    @Value("${notifications.outbox.max-backoff:1h}")
+    private Duration maxBackoff;
+
+    @Value("${notifications.outbox.retention:7d}")
+    private Duration retention;
+
+    @PostConstruct
+    void sizeClaimTimeout() {
+        maxBatchSendTime = Duration.ofMillis(smtpConnectionTimeoutMs + batchSize * smtpTimeoutMs);
+        int batchesAhead = (executorQueueCapacity + executorThreads - 1) / executorThreads;
+        Duration minimum = maxBatchSendTime.multipliedBy(batchesAhead + 1);
+        if (claimTimeout.compareTo(minimum) < 0) {
+            if (!claimTimeout.isZero()) {
+                log.warn("notifications.outbox.claim-timeout {} is shorter than a queued batch may take to send, using {}",
+                        claimTimeout, minimum);
+            }
+            claimTimeout = minimum;
+        }
+        log.info("Notification claims last {}, batches take up to {} to send", claimTimeout, maxBatchSendTime);
+    }
+
+    /**
+     * Write the email to the outbox
+     *
+     * @param deduplicationKey identifies the email, it is queued only once per key
+     */
+    public void enqueue(String type, String deduplicationKey, SimpleMailMessage message) {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        PendingNotification notification = PendingNotification.builder()
+                .id(deduplicationKey)
+                .type(type)
+                .recipient(String.join(",", message.getTo()))
+                .subject(message.getSubject())
+                .text(message.getText())
+                .status(PendingNotification.Status.PENDING)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build();
+        IndexQuery create = new IndexQueryBuilder()
+                .withId(notification.getId())
+                .withObject(notification)
+                .withOpType(IndexQuery.OpType.CREATE)
+                .build();
+        try {
+            elasticsearchOperations.index(create, elasticsearchOperations.getIndexCoordinatesFor(PendingNotification.class));
+            meterRegistry.counter("notifications.enqueued", "type", type).increment();
+        } catch (VersionConflictException e) {
+            log.debug("Notification {} is already in the outbox", deduplicationKey);
+        } catch (UncategorizedElasticsearchException e) {
+            if (!Integer.valueOf(HttpStatus.CONFLICT.value()).equals(e.getStatusCode())) {
+                throw e;
+            }
+            log.debug("Notification {} is already in the outbox", deduplicationKey);
+        }
+    }
+
+    /**
+     * Claim a batch of due entries and hand it to the notification executor.
+     * One batch per run; while earlier batches are still sending, later runs fill the other executor threads.
+     */
+    @Scheduled(fixedDelayString = "${notifications.outbox.poll-interval:1s}")
+    public void dispatch() {
+        if (!notificationExecutor.hasCapacity()) {
+            return;
+        }
+        List<PendingNotification> batch;
+        try {
+            batch = claim();
+        } catch (Exception e) {
+            log.warn("Could not claim notifications from the outbox: {}", e.getMessage());
+            return;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            notificationExecutor.send(batch, maxBatchSendTime).whenComplete((result, error) -> {
+                if (error != null) {
+                    log.error("Notification batch failed", error);
+                    return;
+                }
+                record(result.attempted(), result.failures());
+            });
+        } catch (RejectedExecutionException e) {
+            // The claim runs out and the entries are picked up again
+            meterRegistry.counter("notifications.overflow").increment();
+            log.warn("Notification executor full, {} notifications left in the outbox", batch.size());
+        }
+    }
+
+    private List<PendingNotification> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        List<PendingNotification> due = pendingNotificationRepository.findByStatusAndNextAttemptAtLessThanEqual(
+                        PendingNotification.Status.PENDING, now, PageRequest.of(0, batchSize, Sort.by("nextAttemptAt")))
+                .getContent();
+        if (due.isEmpty()) {
+            return due;
+        }
+
+        LocalDateTime claimedUntil = now.plus(claimTimeout).truncatedTo(ChronoUnit.MILLIS);
+        due.forEach(notification -> notification.setNextAttemptAt(claimedUntil));
+        try {
+            // Saved with the _seq_no read above, an entry changed since (claimed elsewhere) fails.
+            // The saved entries carry their new _seq_no, the result is written with it
+            List<PendingNotification> claimed = new ArrayList<>();
+            pendingNotificationRepository.saveAll(due).forEach(claimed::add);
+            return claimed;
+        } catch (BulkFailureException e) {
+            Map<String, BulkFailureException.FailureDetails> lost = e.getFailedDocuments();
+            log.debug("{} notifications were claimed by another dispatcher", lost.size());
+            // The ones this dispatcher did claim are read again for the _seq_no of the claim
+            List<String> claimedIds = due.stream()
+                    .map(PendingNotification::getId)
+                    .filter(id -> !lost.containsKey(id))
+                    .toList();
+            List<PendingNotification> claimed = new ArrayList<>();
+            pendingNotificationRepository.findAllById(claimedIds).forEach(notification -> {
+                if (claimedUntil.equals(notification.getNextAttemptAt())) {
+                    claimed.add(notification);
+                }
+            });
+            return claimed;
+        }
+    }
+
+    private void record(List<PendingNotification> batch, Map<String, Exception> failures) {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        for (PendingNotification notification : batch) {
+            notification.setAttempts(notification.getAttempts() + 1);
+            Exception failure = failures.get(notification.getId());
+            if (failure == null) {
+                notification.setStatus(PendingNotification.Status.SENT);
+                notification.setSentAt(now);
+                notification.setLastError(null);
+            } else if (notification.getAttempts() >= maxAttempts) {
+                notification.setStatus(PendingNotification.Status.FAILED);
+                notification.setLastError(failure.getMessage());
+                log.error("Giving up on notification {} after {} attempts", notification.getId(), notification.getAttempts());
+            } else {
+                notification.setNextAttemptAt(now.plus(backoff(notification.getAttempts())));
+                notification.setLastError(failure.getMessage());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            // Written with the _seq_no of the claim
+            pendingNotificationRepository.saveAll(batch);
+        } catch (BulkFailureException e) {
+            // Claimed again after the claim ran out, the result of the later attempt stands
+            log.warn("Claim of {} notifications ran out before their result was recorded", e.getFailedDocuments().size());
+        } catch (Exception e) {
+            // Entries stay claimed until the claim timeout, then sent ones may go out again
+            log.error("Could not record the result of {} notifications", batch.size(), e);
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    /**
+     * Delete sent entries older than the retention period, failed ones are kept for inspection
+     */
+    @Scheduled(
+            initialDelayString = "${notifications.outbox.purge-interval:1h}",
+            fixedDelayString = "${notifications.outbox.purge-interval:1h}")
+    public void purgeSent() {
+        try {
+            pendingNotificationRepository.deleteByStatusAndSentAtBefore(
+                    PendingNotification.Status.SENT, LocalDateTime.now().minus(retention));
+        } catch (Exception e) {
+            log.warn("Could not purge sent notifications: {}", e.getMessage());
+        }
+    }
+
+}
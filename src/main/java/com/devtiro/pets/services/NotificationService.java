@@ -2,58 +2,115 @@ package com.devtiro.pets.services;
 
 import com.devtiro.pets.domain.entity.Address;
 import com.devtiro.pets.domain.entity.AdoptionApplication;
+import com.devtiro.pets.domain.entity.User;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
+/**
+ * Renders notification emails from their templates and writes them to the outbox.
+ * Emails triggered by the applicant use the locale of their request (Accept-Language),
+ * emails triggered by staff, and staff digests, use the default notification locale.
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class NotificationService {
 
-    private final JavaMailSender mailSender;
+    private final NotificationOutbox notificationOutbox;
+    private final NotificationTemplates notificationTemplates;
 
-    @Async
     public void sendSubmitConfirmation(String userEmail, AdoptionApplication application) {
+        Map<String, Object> values = applicationValues(application);
+        Address address = application.getAddress();
+        if (address != null) {
+            values.put("street", address.getStreet());
+            values.put("city", address.getCity());
+            values.put("state", address.getState());
+            values.put("zipCode", address.getZipCode());
+        }
+        values.put("email", application.getEmail());
+        values.put("phoneNumber", application.getPhoneNumber());
+        values.put("submittedAt", application.getSubmittedAt());
+
+        // An application is submitted once, so its id keeps a retried submit from queueing a second email
+        send("submit-confirmation", "submit-confirmation:" + application.getId(),
+                userEmail, LocaleContextHolder.getLocale(), values);
+    }
+
+    public void sendStatusChanged(AdoptionApplication application) {
+        Map<String, Object> values = applicationValues(application);
+        values.put("status", application.getStatus().name().replace('_', ' ').toLowerCase(Locale.ROOT));
+
+        // One email per status an application reaches, setting the same status again sends nothing
+        send("status-changed", "status-changed:" + application.getId() + ":" + application.getStatus(),
+                application.getEmail(), notificationTemplates.getDefaultLocale(), values);
+    }
+
+    public void sendWithdrawn(AdoptionApplication application) {
+        send("withdrawn", "withdrawn:" + application.getId(),
+                application.getEmail(), LocaleContextHolder.getLocale(), applicationValues(application));
+    }
+
+    /**
+     * Queue a staff member's digest of the applications submitted in the window.
+     * Failures are thrown, the digest window is then repeated.
+     */
+    public void sendStaffDigest(User staff, LocalDateTime since, LocalDateTime until, long newApplications,
+                                long waitingForReview, List<StaffDigestService.StaffDigest.PetCount> pets) {
+        StringBuilder petLines = new StringBuilder();
+        pets.forEach(pet -> petLines.append("- ").append(pet.petName())
+                .append(": ").append(pet.newApplications()).append('\n'));
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("firstName", staff.getFirstName());
+        values.put("since", since);
+        values.put("until", until);
+        values.put("newApplications", newApplications);
+        values.put("waitingForReview", waitingForReview);
+        values.put("pets", petLines);
+
+        // One digest per staff member and window, a repeated window queues nothing new
+        queue("staff-digest", "staff-digest:" + staff.getId() + ":" + until,
+                staff.getEmail(), notificationTemplates.getDefaultLocale(), values);
+    }
+
+    /**
+     * Render and queue the email; failures are logged, the change that triggered it stands
+     */
+    private void send(String type, String deduplicationKey, String recipient, Locale locale, Map<String, ?> values) {
         try {
-            Address address = application.getAddress();
-            var message = new SimpleMailMessage();
-            message.setTo(userEmail);
-            message.setSubject("Your Application has been submitted");
-            message.setText(String.format(
-                    """
-                            You have submitted your application with these personal information:
-                            
-                            Pet name: %s
-                            Your Address:
-                                street: %s
-                                city: %s
-                                state: %s
-                                zipCode: %s
-                            Your Email Address: %s
-                            Your Phone number: %s
-                            Please confirm your personal information is correct,
-                              and wait for the potential staffer to approve your application request
-                    """,
-                    application.getPetName(),
-                    address.getStreet(),
-                    address.getCity(),
-                    address.getState(),
-                    address.getZipCode(),
-                    application.getEmail(),
-                    application.getPhoneNumber()
-            ));
-
-            mailSender.send(message);
-            log.info("Sent confirmation notification to adopter: {}, for pet {} ", userEmail, application.getPetName());
+            queue(type, deduplicationKey, recipient, locale, values);
         } catch (Exception e) {
-            log.error("Failed to send viewing request notification to adopter: {}", userEmail, e);
+            log.error("Failed to queue {} notification to: {}", type, recipient, e);
         }
     }
 
+    private void queue(String type, String deduplicationKey, String recipient, Locale locale, Map<String, ?> values) {
+        NotificationTemplates.RenderedNotification rendered = notificationTemplates.render(type, locale, values);
+        var message = new SimpleMailMessage();
+        message.setTo(recipient);
+        message.setSubject(rendered.subject());
+        message.setText(rendered.text());
+
+        // Written to the outbox and sent by its dispatcher, the caller does not wait for SMTP
+        notificationOutbox.enqueue(type, deduplicationKey, message);
+    }
+
+    private static Map<String, Object> applicationValues(AdoptionApplication application) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("petName", application.getPetName());
+        values.put("firstName", application.getFirstName());
+        values.put("lastName", application.getLastName());
+        return values;
+    }
+
 }
@@ -0,0 +1,240 @@
+package com.devtiro.pets.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notification email templates from classpath:notifications/templates, parsed once at startup.
+ * A template file is named after its notification type, with an optional locale suffix
+ * (submit-confirmation.txt, submit-confirmation_de.txt); the first line is "Subject: ...",
+ * the body follows after a blank line. {{name}} is replaced by the value of that name, a missing
+ * or null value renders empty. Dates are formatted for the locale.
+ * A requested locale is first narrowed to one that templates exist for (or the default locale), so the caches
+ * below hold at most one entry per template locale whatever Accept-Language a client sends.
+ * Rendering walks the precompiled literal/placeholder parts into a per-thread reused buffer,
+ * so its cost is one pass over the parts, without parsing or format strings (virtual threads get a fresh buffer).
+ * Metric: notifications.render (tag type).
+ */
+@Slf4j
+@Service
+public class NotificationTemplates {
+
+    private static final String location = "classpath*:notifications/templates/*.txt";
+    private static final String subjectPrefix = "Subject:";
+    private static final int maxRetainedBuffer = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(2048));
+
+    private final MeterRegistry meterRegistry;
+    private final Locale defaultLocale;
+    private final Map<String, CompiledTemplate> templates;
+    private final Set<Locale> templateLocales;
+    private final ConcurrentMap<TemplateKey, CompiledTemplate> resolved = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Locale, DateFormats> dateFormats = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> renderTimers = new ConcurrentHashMap<>();
+
+    public NotificationTemplates(MeterRegistry meterRegistry,
+                                 @Value("${notifications.default-locale:en}") Locale defaultLocale) throws IOException {
+        this.meterRegistry = meterRegistry;
+        this.defaultLocale = defaultLocale;
+        this.templates = load(new PathMatchingResourcePatternResolver());
+        this.templateLocales = templateLocales(templates.keySet(), defaultLocale);
+        log.info("Compiled {} notification templates: {}", templates.size(), new TreeSet<>(templates.keySet()));
+    }
+
+    public Locale getDefaultLocale() {
+        return defaultLocale;
+    }
+
+    /**
+     * Render the template of the type in the closest available locale
+     *
+     * @throws IllegalArgumentException when there is no template for the type
+     */
+    public RenderedNotification render(String type, Locale locale, Map<String, ?> values) {
+        long startedAt = System.nanoTime();
+        Locale effectiveLocale = supportedLocale(locale);
+        CompiledTemplate template = resolve(type, effectiveLocale);
+
+        // Virtual threads run one request each, a buffer kept per thread would never be reused
+        boolean virtual = Thread.currentThread().isVirtual();
+        StringBuilder buffer = virtual ? new StringBuilder(2048) : buffers.get();
+        try {
+            buffer.setLength(0);
+            template.subject().renderTo(buffer, values, effectiveLocale, this);
+            String subject = buffer.toString();
+            buffer.setLength(0);
+            template.body().renderTo(buffer, values, effectiveLocale, this);
+            return new RenderedNotification(subject, buffer.toString());
+        } finally {
+            // An unusually long message should not stay pinned to the thread
+            if (!virtual && buffer.capacity() > maxRetainedBuffer) {
+                buffers.remove();
+            }
+            // Timers are looked up once per type, the registry lookup would cost more than the rendering
+            renderTimers.computeIfAbsent(type, t -> meterRegistry.timer("notifications.render", "type", t))
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * The closest locale that templates exist for: language and country, language, else the default locale
+     */
+    private Locale supportedLocale(Locale locale) {
+        if (locale == null) {
+            return defaultLocale;
+        }
+        if (!locale.getCountry().isEmpty()) {
+            Locale withCountry = Locale.of(locale.getLanguage(), locale.getCountry());
+            if (templateLocales.contains(withCountry)) {
+                return withCountry;
+            }
+        }
+        Locale language = Locale.of(locale.getLanguage());
+        return templateLocales.contains(language) ? language : defaultLocale;
+    }
+
+    /**
+     * Most specific template first: type_language_COUNTRY, type_language, type_defaultLanguage, type
+     */
+    private CompiledTemplate resolve(String type, Locale locale) {
+        return resolved.computeIfAbsent(new TemplateKey(type, locale), key -> {
+            List<String> candidates = new ArrayList<>();
+            if (!locale.getCountry().isEmpty()) {
+                candidates.add(type + "_" + locale.getLanguage() + "_" + locale.getCountry());
+            }
+            candidates.add(type + "_" + locale.getLanguage());
+            candidates.add(type + "_" + defaultLocale.getLanguage());
+            candidates.add(type);
+            return candidates.stream()
+                    .map(templates::get)
+                    .filter(Objects::nonNull)
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("No notification template for " + type));
+        });
+    }
+
+    private void appendValue(StringBuilder buffer, Object value, Locale locale) {
+        if (value instanceof TemporalAccessor temporal) {
+            DateFormats formats = dateFormats.computeIfAbsent(locale, DateFormats::of);
+            (temporal.isSupported(ChronoField.HOUR_OF_DAY) ? formats.dateTime() : formats.date()).formatTo(temporal, buffer);
+        } else if (value instanceof CharSequence text) {
+            buffer.append(text);
+        } else {
+            buffer.append(value);
+        }
+    }
+
+    private static Map<String, CompiledTemplate> load(ResourcePatternResolver resolver) throws IOException {
+        Map<String, CompiledTemplate> loaded = new HashMap<>();
+        for (Resource resource : resolver.getResources(location)) {
+            String name = Objects.requireNonNull(resource.getFilename());
+            String content = resource.getContentAsString(StandardCharsets.UTF_8).replace("\r\n", "\n");
+            loaded.put(name.substring(0, name.length() - ".txt".length()), compile(name, content));
+        }
+        return Map.copyOf(loaded);
+    }
+
+    /**
+     * Locales of the template files from their suffix (type_language or type_language_COUNTRY), plus the default
+     */
+    private static Set<Locale> templateLocales(Set<String> names, Locale defaultLocale) {
+        Set<Locale> locales = new HashSet<>();
+        locales.add(defaultLocale);
+        for (String name : names) {
+            String[] parts = name.split("_", 3);
+            if (parts.length == 2) {
+                locales.add(Locale.of(parts[1]));
+            } else if (parts.length == 3) {
+                locales.add(Locale.of(parts[1], parts[2]));
+            }
+        }
+        return Set.copyOf(locales);
+    }
+
+    static CompiledTemplate compile(String name, String content) {
+        int firstLineEnd = content.indexOf('\n');
+        String firstLine = firstLineEnd < 0 ? content : content.substring(0, firstLineEnd);
+        if (!firstLine.startsWith(subjectPrefix)) {
+            throw new IllegalStateException("Notification template " + name + " does not start with a subject line");
+        }
+        String body = firstLineEnd < 0 ? "" : content.substring(firstLineEnd + 1);
+        if (body.startsWith("\n")) {
+            body = body.substring(1);
+        }
+        return new CompiledTemplate(
+                Parts.parse(name, firstLine.substring(subjectPrefix.length()).strip()),
+                Parts.parse(name, body));
+    }
+
+    public record RenderedNotification(String subject, String text) {
+    }
+
+    record CompiledTemplate(Parts subject, Parts body) {
+    }
+
+    private record TemplateKey(String type, Locale locale) {
+    }
+
+    private record DateFormats(DateTimeFormatter date, DateTimeFormatter dateTime) {
+
+        static DateFormats of(Locale locale) {
+            return new DateFormats(
+                    DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withLocale(locale),
+                    DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM, FormatStyle.SHORT).withLocale(locale));
+        }
+    }
+
+    /**
+     * A template split into literals and placeholders: literals[0] name[0] literals[1] ... literals[n]
+     */
+    record Parts(String[] literals, String[] names) {
+
+        static Parts parse(String template, String text) {
+            List<String> literals = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            int position = 0;
+            int open;
+            while ((open = text.indexOf("{{", position)) >= 0) {
+                int close = text.indexOf("}}", open + 2);
+                if (close < 0) {
+                    throw new IllegalStateException("Unclosed placeholder in notification template " + template);
+                }
+                literals.add(text.substring(position, open));
+                names.add(text.substring(open + 2, close).strip());
+                position = close + 2;
+            }
+            literals.add(text.substring(position));
+            return new Parts(literals.toArray(String[]::new), names.toArray(String[]::new));
+        }
+
+        void renderTo(StringBuilder buffer, Map<String, ?> values, Locale locale, NotificationTemplates templates) {
+            for (int i = 0; i < names.length; i++) {
+                buffer.append(literals[i]);
+                Object value = values.get(names[i]);
+                if (value != null) {
+                    templates.appendValue(buffer, value, locale);
+                }
+            }
+            buffer.append(literals[names.length]);
+        }
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.devtiro.pets.services;
+
+import com.devtiro.pets.domain.dto.BulkImportFormat;
+import com.devtiro.pets.domain.dto.PetBulkImportResponse;
+import com.devtiro.pets.security.AuthenticatedUser;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface PetBulkImportService {
+
+    /**
+     * Stream pets from the upload into Elasticsearch.
+     * Rows are parsed and validated one at a time and indexed in batches,
+     * the upload is never held in memory as a whole.
+     */
+    PetBulkImportResponse importPets(InputStream input, BulkImportFormat format, AuthenticatedUser staff) throws IOException;
+
+}
@@ -0,0 +1,15 @@
+package com.devtiro.pets.services;
+
+import com.devtiro.pets.domain.dto.PetProfileDto;
+import com.devtiro.pets.security.AuthenticatedUser;
+
+public interface PetProfileService {
+
+    /**
+     * Load the pet, its photos and its medical records in parallel.
+     * The pet is required, the other sections are left out of the profile
+     * when they take longer than pet-profile.branch-timeout.
+     */
+    PetProfileDto getPetProfile(String petId, AuthenticatedUser user);
+
+}
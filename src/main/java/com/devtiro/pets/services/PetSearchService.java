@@ -1,12 +1,66 @@
 package com.devtiro.pets.services;
 
+import com.devtiro.pets.domain.dto.HitCountMode;
+import com.devtiro.pets.domain.dto.PetBatchSearchQuery;
+import com.devtiro.pets.domain.dto.PetBatchSearchResult;
 import com.devtiro.pets.domain.dto.PetDto;
+import com.devtiro.pets.domain.dto.PetFacetedSearchResponse;
+import com.devtiro.pets.domain.dto.PetSearchCursorResponse;
 import com.devtiro.pets.domain.dto.PetSearchRequest;
+import com.devtiro.pets.domain.dto.PetSliceResponse;
+import com.devtiro.pets.domain.dto.PetSummaryDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface PetSearchService {
 
     Page<PetDto> searchPets(PetSearchRequest request, Pageable pageable);
 
+    /**
+     * Same search as {@link #searchPets} without forcing an exact hit count,
+     * so Elasticsearch can stop counting early on large result sets
+     *
+     * @param cap count limit of {@link HitCountMode#CAPPED}
+     */
+    PetSliceResponse searchPetsSlice(PetSearchRequest request, Pageable pageable, HitCountMode mode, int cap);
+
+    /**
+     * Same search as {@link #searchPets}, but only the card fields of _source are fetched
+     * and decoded straight into {@link PetSummaryDto}
+     */
+    Page<PetSummaryDto> searchPetSummaries(PetSearchRequest request, Pageable pageable);
+
+    /**
+     * Non-blocking variant of {@link #searchPets}, no thread waits for the Elasticsearch round trip.
+     * The future fails with a SearchTimeoutException after search.async.timeout,
+     * and cancelling it (or the timeout) aborts the in-flight request.
+     */
+    CompletableFuture<Page<PetDto>> searchPetsAsync(PetSearchRequest request, Pageable pageable);
+
+    /**
+     * Run several searches in one multi search round trip.
+     * Results are in the order of the queries, a failing query only fails its own result.
+     */
+    List<PetBatchSearchResult> searchPetsBatch(List<PetBatchSearchQuery> queries);
+
+    /**
+     * Cursor based search for deep pagination.
+     * Uses a point-in-time snapshot and search_after, so every page costs the same regardless of depth.
+     *
+     * @param cursor continuation token of the previous page, null for the first page
+     * @param size   number of pets per page
+     * @param sort   sort of the first page, later pages reuse the sort stored in the cursor
+     */
+    PetSearchCursorResponse searchPetsWithCursor(PetSearchRequest request, String cursor, int size, Sort sort);
+
+    /**
+     * Same page as {@link #searchPets} plus species, size, age and distance facet counts,
+     * computed by aggregations in the same search request.
+     */
+    PetFacetedSearchResponse searchPetsWithFacets(PetSearchRequest request, Pageable pageable);
+
 }
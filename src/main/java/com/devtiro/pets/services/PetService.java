@@ -1,21 +1,31 @@
 package com.devtiro.pets.services;
 
 import com.devtiro.pets.domain.dto.*;
-import com.devtiro.pets.domain.entity.User;
+import com.devtiro.pets.security.AuthenticatedUser;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface PetService {
 
     Page<PetDto> getAllPets(Pageable pageable);
 
+    Page<PetSummaryDto> getAllPetSummaries(Pageable pageable);
+
+    PetSliceResponse getAllPetsSlice(Pageable pageable, HitCountMode mode);
+
     PetDto getAvailablePetById(String petId);
 
     Page<PetDto> getAllAvailablePets(Pageable pageable);
 
-    PetDto createPet(PetCreateRequest request, User staff);
+    Page<PetSummaryDto> getAllAvailablePetSummaries(Pageable pageable);
+
+    PetSliceResponse getAllAvailablePetsSlice(Pageable pageable, HitCountMode mode);
+
+    PetDto createPet(PetCreateRequest request, AuthenticatedUser staff);
 
     PetDto updatePet(String petId, PetUpdateRequest request);
 
@@ -25,4 +35,16 @@ public interface PetService {
 
     Page<PetDto> searchPets(PetSearchRequest request, Pageable pageable);
 
+    PetSliceResponse searchPetsSlice(PetSearchRequest request, Pageable pageable, HitCountMode mode);
+
+    Page<PetSummaryDto> searchPetSummaries(PetSearchRequest request, Pageable pageable);
+
+    CompletableFuture<Page<PetDto>> searchPetsAsync(PetSearchRequest request, Pageable pageable);
+
+    PetBatchSearchResponse searchPetsBatch(PetBatchSearchRequest request);
+
+    PetSearchCursorResponse searchPetsWithCursor(PetSearchRequest request, String cursor, int size, Sort sort);
+
+    PetFacetedSearchResponse searchPetsWithFacets(PetSearchRequest request, Pageable pageable);
+
 }
@@ -0,0 +1,205 @@
+package com.devtiro.pets.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.FilterAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import com.devtiro.pets.domain.entity.AdoptionApplicationStatus;
+import com.devtiro.pets.domain.entity.NotificationCheckpoint;
+import com.devtiro.pets.domain.entity.User;
+import com.devtiro.pets.repositories.NotificationCheckpointRepository;
+import com.devtiro.pets.repositories.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Sends each staff member one digest of the applications submitted for their pets per window,
+ * instead of an email per application.
+ * Every run covers the windows since the last completed one in a single aggregation over
+ * adoption_applications: submitted applications by staffId, the new ones by petId.
+ * The window is recorded as pending in the checkpoint before the digests are queued and as completed
+ * after, so a restart repeats the same window (the outbox drops the repeated digests by their key)
+ * and never skips one. Window ends are aligned to the window length and lag behind the clock by the
+ * settle delay, so applications still being written or refreshed fall into the next window.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StaffDigestService {
+
+    private static final String applicationIndex = "adoption_applications";
+    private static final String checkpointId = "staff-digest";
+    private static final DateTimeFormatter submittedAtFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final NotificationCheckpointRepository notificationCheckpointRepository;
+    private final UserRepository userRepository;
+    private final NotificationService notificationService;
+
+    @Value("${staff-digest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${staff-digest.window:1h}")
+    private Duration window;
+
+    @Value("${staff-digest.settle-delay:1m}")
+    private Duration settleDelay;
+
+    @Value("${staff-digest.max-staff:1000}")
+    private int maxStaff;
+
+    @Value("${staff-digest.max-pets:50}")
+    private int maxPets;
+
+    @Scheduled(
+            initialDelayString = "${staff-digest.check-interval:5m}",
+            fixedDelayString = "${staff-digest.check-interval:5m}")
+    public void sendDigests() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            runWindow();
+        } catch (OptimisticLockingFailureException e) {
+            log.debug("Staff digest window taken by another instance");
+        } catch (Exception e) {
+            // The window stays pending and is repeated on the next run
+            log.warn("Could not send staff digests: {}", e.getMessage());
+        }
+    }
+
+    private void runWindow() throws IOException {
+        LocalDateTime latestEnd = align(LocalDateTime.now().minus(settleDelay));
+        NotificationCheckpoint checkpoint = notificationCheckpointRepository.findById(checkpointId)
+                .orElseGet(() -> NotificationCheckpoint.builder()
+                        .id(checkpointId)
+                        .completedUntil(latestEnd.minus(window))
+                        .build());
+
+        if (checkpoint.getPendingUntil() == null) {
+            if (!latestEnd.isAfter(checkpoint.getCompletedUntil())) {
+                return;
+            }
+            checkpoint.setPendingUntil(latestEnd);
+            checkpoint = save(checkpoint);
+        }
+        LocalDateTime since = checkpoint.getCompletedUntil();
+        LocalDateTime until = checkpoint.getPendingUntil();
+
+        Map<String, StaffDigest> digests = aggregate(since, until);
+        if (!digests.isEmpty()) {
+            Map<String, User> staff = new HashMap<>();
+            userRepository.findAllById(digests.keySet()).forEach(user -> staff.put(user.getId(), user));
+
+            digests.forEach((staffId, digest) -> {
+                User member = staff.get(staffId);
+                if (member == null || !member.isEnabled()) {
+                    log.debug("No active staff member {} for the digest", staffId);
+                    return;
+                }
+                notificationService.sendStaffDigest(member, since, until,
+                        digest.newApplications(), digest.waitingForReview(), digest.pets());
+            });
+        }
+
+        checkpoint.setCompletedUntil(until);
+        checkpoint.setPendingUntil(null);
+        save(checkpoint);
+        log.info("Queued {} staff digests for {} - {}", digests.size(), since, until);
+    }
+
+    /**
+     * Submitted applications per staff member, with the ones submitted in the window per pet
+     */
+    private Map<String, StaffDigest> aggregate(LocalDateTime since, LocalDateTime until) throws IOException {
+        Aggregation petNames = Aggregation.of(a -> a
+                .topHits(h -> h.size(1).source(src -> src.filter(f -> f.includes("petName")))));
+        Aggregation newByPet = Aggregation.of(a -> a
+                .filter(f -> f.range(r -> r.date(d -> d
+                        .field("submittedAt")
+                        .gt(since.format(submittedAtFormat))
+                        .lte(until.format(submittedAtFormat)))))
+                .aggregations("pets", p -> p
+                        .terms(t -> t.field("petId").size(maxPets))
+                        .aggregations("name", petNames)));
+
+        SearchResponse<Void> response = elasticsearchClient.search(s -> s
+                        .index(applicationIndex)
+                        .size(0)
+                        .query(q -> q.bool(b -> b
+                                .filter(f -> f.term(t -> t.field("status").value(AdoptionApplicationStatus.SUBMITTED.name())))
+                                .filter(f -> f.exists(e -> e.field("staffId")))))
+                        .aggregations("staff", a -> a
+                                .terms(t -> t.field("staffId").size(maxStaff))
+                                .aggregations("new", newByPet)),
+                Void.class);
+
+        StringTermsAggregate staff = response.aggregations().get("staff").sterms();
+        if (staff.sumOtherDocCount() != null && staff.sumOtherDocCount() > 0) {
+            log.warn("More than {} staff members with submitted applications, raise staff-digest.max-staff", maxStaff);
+        }
+
+        Map<String, StaffDigest> digests = new LinkedHashMap<>();
+        for (StringTermsBucket staffBucket : staff.buckets().array()) {
+            FilterAggregate recent = staffBucket.aggregations().get("new").filter();
+            if (recent.docCount() == 0) {
+                continue;
+            }
+            StringTermsAggregate pets = recent.aggregations().get("pets").sterms();
+            List<StaffDigest.PetCount> petCounts = new ArrayList<>();
+            for (StringTermsBucket petBucket : pets.buckets().array()) {
+                petCounts.add(new StaffDigest.PetCount(petName(petBucket), petBucket.docCount()));
+            }
+            digests.put(staffBucket.key().stringValue(),
+                    new StaffDigest(recent.docCount(), staffBucket.docCount(), petCounts));
+        }
+        return digests;
+    }
+
+    private static String petName(StringTermsBucket petBucket) {
+        List<Hit<JsonData>> hits = petBucket.aggregations().get("name").topHits().hits().hits();
+        if (hits.isEmpty() || hits.getFirst().source() == null) {
+            return petBucket.key().stringValue();
+        }
+        Object name = hits.getFirst().source().to(Map.class).get("petName");
+        return name == null ? petBucket.key().stringValue() : name.toString();
+    }
+
+    private NotificationCheckpoint save(NotificationCheckpoint checkpoint) {
+        checkpoint.setUpdatedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+        return notificationCheckpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Start of the window the time falls in, windows are aligned to the epoch
+     */
+    private LocalDateTime align(LocalDateTime time) {
+        ZoneId zone = ZoneId.systemDefault();
+        long seconds = time.atZone(zone).toEpochSecond();
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(seconds - Math.floorMod(seconds, window.toSeconds())), zone);
+    }
+
+    public record StaffDigest(long newApplications, long waitingForReview, List<PetCount> pets) {
+
+        public record PetCount(String petName, long newApplications) {
+        }
+    }
+
+}
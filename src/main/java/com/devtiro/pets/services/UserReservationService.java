@@ -0,0 +1,338 @@
+package com.devtiro.pets.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.devtiro.pets.domain.entity.User;
+import com.devtiro.pets.domain.entity.UserReservation;
+import com.devtiro.pets.exceptions.RegistrationUnavailableException;
+import com.devtiro.pets.exceptions.UserAlreadyExistsException;
+import com.devtiro.pets.repositories.UserRepository;
+import com.devtiro.pets.repositories.UserReservationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps usernames and emails unique with one lock document per value in the user_reservations index.
+ * Both reservations are created with op_type=create in a single bulk request, so Elasticsearch decides
+ * atomically who gets a value, without searching the users index (and waiting for its refresh) first.
+ * Reservations stay pending until the user is saved; pending ones whose user never appeared are removed
+ * by a scheduled cleanup.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserReservationService {
+
+    private static final String reservationIndex = "user_reservations";
+    // Reservation ids are "username:..." or "email:...", so the marker cannot collide with one
+    private static final String backfillMarkerId = "backfill:completed";
+    private static final String backfillKeepAlive = "5m";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final UserReservationRepository userReservationRepository;
+    private final UserRepository userRepository;
+
+    @Value("${user-reservations.orphan-grace-period:5m}")
+    private Duration orphanGracePeriod;
+
+    @Value("${user-reservations.cleanup-batch-size:500}")
+    private int cleanupBatchSize;
+
+    @Value("${user-reservations.backfill-enabled:true}")
+    private boolean backfillEnabled;
+
+    // Set once the backfill marker exists
+    private volatile boolean backfilled;
+
+    /**
+     * Reserve the user's username and email, both or neither
+     *
+     * @throws UserAlreadyExistsException when either value is taken
+     * @throws RegistrationUnavailableException while existing users may not have their reservations yet
+     */
+    public void reserve(User user) {
+        if (backfillEnabled && !backfilled) {
+            throw new RegistrationUnavailableException("Registration is temporarily unavailable, please try again later");
+        }
+        List<UserReservation> reservations = reservationsOf(user, true);
+        List<BulkResponseItem> items = create(reservations);
+
+        List<UserReservation> created = new ArrayList<>();
+        UserReservation.Type taken = null;
+        String failure = null;
+        for (int i = 0; i < items.size(); i++) {
+            BulkResponseItem item = items.get(i);
+            if (item.error() == null) {
+                created.add(reservations.get(i));
+            } else if (item.status() == 409) {
+                taken = taken == null ? reservations.get(i).getType() : taken;
+            } else {
+                failure = item.error().reason();
+            }
+        }
+
+        if (created.size() == reservations.size()) {
+            return;
+        }
+
+        // Give back what this registration did get, so the other value stays free
+        release(created);
+        if (taken != null) {
+            throw new UserAlreadyExistsException(taken == UserReservation.Type.USERNAME
+                    ? "Username already exists"
+                    : "Email already exists");
+        }
+        throw new RuntimeException("Could not reserve username and email: " + failure);
+    }
+
+    /**
+     * The user is saved, its reservations are no longer cleanup candidates.
+     * Not needed for correctness, the cleanup checks the user before deleting, so it runs off the request path.
+     */
+    public void confirm(User user) {
+        List<BulkOperation> operations = reservationsOf(user, false).stream()
+                .map(this::indexOperation)
+                .toList();
+        elasticsearchAsyncClient.bulk(b -> b.operations(operations))
+                .whenComplete((response, failure) -> {
+                    if (failure != null || response.errors()) {
+                        log.warn("Could not confirm reservations of user {}, the cleanup will", user.getId());
+                    }
+                });
+    }
+
+    /**
+     * Free the reservations of a user that could not be saved
+     */
+    public void release(User user) {
+        release(reservationsOf(user, true));
+    }
+
+    private void release(List<UserReservation> reservations) {
+        try {
+            userReservationRepository.deleteAllById(reservations.stream().map(UserReservation::getId).toList());
+        } catch (Exception e) {
+            // Left pending, the cleanup removes them after the grace period
+            log.warn("Could not release reservations {}: {}", reservations.stream().map(UserReservation::getId).toList(), e.getMessage());
+        }
+    }
+
+    /**
+     * Remove pending reservations whose user was never saved, e.g. after a crash between reserving and saving.
+     * The grace period keeps registrations that are still in progress.
+     */
+    @Scheduled(
+            initialDelayString = "${user-reservations.cleanup-interval:10m}",
+            fixedDelayString = "${user-reservations.cleanup-interval:10m}")
+    public void cleanUpOrphans() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(orphanGracePeriod);
+        Pageable pageable = PageRequest.of(0, cleanupBatchSize, Sort.by("createdAt"));
+        int orphans = 0;
+        int confirmed = 0;
+
+        try {
+            Page<UserReservation> pending;
+            do {
+                // Every batch is either deleted or confirmed, so the next one starts at the first page again
+                pending = userReservationRepository.findByPendingTrueAndCreatedAtBefore(cutoff, pageable);
+                if (pending.isEmpty()) {
+                    break;
+                }
+
+                Set<String> userIds = pending.stream().map(UserReservation::getUserId).collect(Collectors.toSet());
+                Set<String> existingUserIds = new HashSet<>();
+                userRepository.findAllById(userIds).forEach(user -> existingUserIds.add(user.getId()));
+
+                Map<Boolean, List<UserReservation>> byUserExists = pending.stream()
+                        .collect(Collectors.partitioningBy(r -> existingUserIds.contains(r.getUserId())));
+
+                List<UserReservation> orphaned = byUserExists.get(false);
+                if (!orphaned.isEmpty()) {
+                    userReservationRepository.deleteAll(orphaned);
+                    orphans += orphaned.size();
+                }
+                List<UserReservation> owned = byUserExists.get(true);
+                if (!owned.isEmpty()) {
+                    owned.forEach(r -> r.setPending(false));
+                    userReservationRepository.saveAll(owned);
+                    confirmed += owned.size();
+                }
+            } while (pending.hasNext());
+        } catch (Exception e) {
+            log.warn("User reservation cleanup failed: {}", e.getMessage());
+        }
+
+        if (orphans > 0 || confirmed > 0) {
+            log.info("User reservation cleanup removed {} orphans and confirmed {} reservations", orphans, confirmed);
+        }
+    }
+
+    /**
+     * Users created before the reservations existed get theirs once, otherwise their username and email could be
+     * registered again. Registration is refused until the backfill has completed, on this or another instance,
+     * which a marker document in the reservation index records. A failed run is retried on the next interval.
+     */
+    @Scheduled(fixedDelayString = "${user-reservations.backfill-retry-interval:1m}")
+    public void backfillReservations() {
+        if (!backfillEnabled || backfilled) {
+            return;
+        }
+        try {
+            if (userReservationRepository.existsById(backfillMarkerId)) {
+                backfilled = true;
+                return;
+            }
+            int reserved = backfill();
+            userReservationRepository.save(UserReservation.builder()
+                    .id(backfillMarkerId)
+                    .createdAt(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS))
+                    .build());
+            backfilled = true;
+            log.info("Username/email reservation backfill completed, created {} missing reservations", reserved);
+        } catch (Exception e) {
+            log.error("Username/email reservation backfill failed, registration stays unavailable until it succeeds", e);
+        }
+    }
+
+    /**
+     * Reserve the values of every user, in a point in time snapshot of the users index paged with search_after,
+     * so there is no from/size limit on the number of users
+     */
+    private int backfill() throws IOException {
+        String userIndex = elasticsearchOperations.getIndexCoordinatesFor(User.class).getIndexName();
+        String pitId = elasticsearchClient.openPointInTime(o -> o
+                .index(userIndex)
+                .keepAlive(k -> k.time(backfillKeepAlive))
+        ).id();
+        int reserved = 0;
+        try {
+            List<FieldValue> searchAfter = null;
+            while (true) {
+                String currentPitId = pitId;
+                List<FieldValue> after = searchAfter;
+                SearchResponse<UserValues> response = elasticsearchClient.search(s -> {
+                    s.pit(p -> p.id(currentPitId).keepAlive(k -> k.time(backfillKeepAlive)))
+                            .size(cleanupBatchSize)
+                            .trackTotalHits(t -> t.enabled(false))
+                            .source(src -> src.filter(f -> f.includes("username", "email")))
+                            .sort(o -> o.field(f -> f.field("_shard_doc").order(SortOrder.Asc)));
+                    if (after != null) {
+                        s.searchAfter(after);
+                    }
+                    return s;
+                }, UserValues.class);
+                pitId = response.pitId() != null ? response.pitId() : pitId;
+
+                List<Hit<UserValues>> hits = response.hits().hits();
+                List<UserReservation> reservations = hits.stream()
+                        .filter(hit -> hit.source() != null
+                                && hit.source().username() != null && hit.source().email() != null)
+                        .flatMap(hit -> reservationsOf(User.builder()
+                                .id(hit.id())
+                                .username(hit.source().username())
+                                .email(hit.source().email())
+                                .build(), false).stream())
+                        .toList();
+                if (!reservations.isEmpty()) {
+                    for (BulkResponseItem item : create(reservations)) {
+                        // Existing reservations answer 409 and are left as they are, anything else fails the run
+                        if (item.error() == null) {
+                            reserved++;
+                        } else if (item.status() != 409) {
+                            throw new IllegalStateException("Could not reserve " + item.id() + ": " + item.error().reason());
+                        }
+                    }
+                }
+
+                if (hits.size() < cleanupBatchSize) {
+                    return reserved;
+                }
+                searchAfter = hits.getLast().sort();
+            }
+        } finally {
+            closePointInTime(pitId);
+        }
+    }
+
+    private void closePointInTime(String pitId) {
+        try {
+            elasticsearchClient.closePointInTime(c -> c.id(pitId));
+        } catch (IOException | ElasticsearchException e) {
+            // Not fatal, the PIT expires on its own after the keep alive
+            log.warn("Could not close point in time: {}", e.getMessage());
+        }
+    }
+
+    private record UserValues(String username, String email) {
+    }
+
+    private List<UserReservation> reservationsOf(User user, boolean pending) {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        return List.of(
+                reservation(UserReservation.Type.USERNAME, user.getUsername(), user.getId(), pending, now),
+                reservation(UserReservation.Type.EMAIL, user.getEmail(), user.getId(), pending, now));
+    }
+
+    private static UserReservation reservation(UserReservation.Type type, String value, String userId,
+                                               boolean pending, LocalDateTime createdAt) {
+        return UserReservation.builder()
+                .id(UserReservation.idOf(type, value))
+                .type(type)
+                .value(value)
+                .userId(userId)
+                .pending(pending)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private List<BulkResponseItem> create(List<UserReservation> reservations) {
+        List<BulkOperation> operations = reservations.stream()
+                .map(reservation -> BulkOperation.of(op -> op
+                        .create(c -> c
+                                .index(reservationIndex)
+                                .id(reservation.getId())
+                                .document(elasticsearchOperations.getElasticsearchConverter().mapObject(reservation)))))
+                .toList();
+        try {
+            BulkResponse response = elasticsearchClient.bulk(b -> b.operations(operations));
+            return response.items();
+        } catch (IOException e) {
+            log.error("Reserving {} failed", reservations.stream().map(UserReservation::getId).toList(), e);
+            throw new RuntimeException("Could not reserve username and email", e);
+        }
+    }
+
+    private BulkOperation indexOperation(UserReservation reservation) {
+        return BulkOperation.of(op -> op
+                .index(i -> i
+                        .index(reservationIndex)
+                        .id(reservation.getId())
+                        .document(elasticsearchOperations.getElasticsearchConverter().mapObject(reservation))));
+    }
+
+}
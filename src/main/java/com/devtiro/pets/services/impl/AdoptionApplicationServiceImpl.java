@@ -8,50 +8,86 @@ import com.devtiro.pets.domain.entity.*;
 import com.devtiro.pets.exceptions.*;
 import com.devtiro.pets.mappers.AdoptionApplicationMapper;
 import com.devtiro.pets.repositories.ApplicationRepository;
-import com.devtiro.pets.repositories.PetRepository;
+import com.devtiro.pets.repositories.UserRepository;
+import com.devtiro.pets.security.AuthenticatedUser;
 import com.devtiro.pets.services.AdoptionApplicationService;
 import com.devtiro.pets.services.NotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.retry.RetryTemplate;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.ResourceNotFoundException;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+import org.springframework.data.elasticsearch.VersionConflictException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.Optional;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AdoptionApplicationServiceImpl implements AdoptionApplicationService {
 
-    private final PetRepository petRepository;
+    private final PetDetailCache petDetailCache;
+    private final UserRepository userRepository;
     private final AdoptionApplicationMapper adoptionApplicationMapper;
     private final ApplicationRepository applicationRepository;
     private final NotificationService notificationService;
+    private final ConditionalUpdater conditionalUpdater;
+    private final PetSearchResultCache petSearchResultCache;
+    private final RetryTemplate optimisticLockRetryTemplate;
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    /**
+     * Statuses staff may set, by the statuses an application may have before. Drafts belong to the applicant and
+     * withdrawing is the applicant's own transition; setting the current status again only appends the staff notes.
+     * Approved applications stay approved, their pet has been adopted.
+     */
+    private static final Map<AdoptionApplicationStatus, Set<AdoptionApplicationStatus>> staffTransitions = Map.of(
+            AdoptionApplicationStatus.SUBMITTED, EnumSet.of(AdoptionApplicationStatus.SUBMITTED, AdoptionApplicationStatus.UNDER_REVIEW),
+            AdoptionApplicationStatus.UNDER_REVIEW, EnumSet.of(AdoptionApplicationStatus.SUBMITTED, AdoptionApplicationStatus.UNDER_REVIEW),
+            AdoptionApplicationStatus.APPROVED, EnumSet.of(AdoptionApplicationStatus.SUBMITTED, AdoptionApplicationStatus.UNDER_REVIEW, AdoptionApplicationStatus.APPROVED),
+            AdoptionApplicationStatus.REJECTED, EnumSet.of(AdoptionApplicationStatus.SUBMITTED, AdoptionApplicationStatus.UNDER_REVIEW, AdoptionApplicationStatus.REJECTED));
+
+    private record Approval(AdoptionApplication application, AdoptionApplicationStatus previousStatus) {
+    }
 
     @Override
-    public AdoptionApplicationDto createApplication(AdoptionApplicationCreateRequest request, User applicant) {
+    public AdoptionApplicationDto createApplication(AdoptionApplicationCreateRequest request, AuthenticatedUser applicant) {
         log.info("Creating adoption application for pet {} by user {}", request.getPetId(), applicant.getUsername());
 
-        Pet pet = petRepository.findById(request.getPetId())
+        Pet pet = petDetailCache.findById(request.getPetId())
                 .orElseThrow(() -> new PetNotFoundException("Pet not found with id: " + request.getPetId()));
 
         if (!pet.getStatus().equals(PetStatus.AVAILABLE)) {
             throw new InvalidApplicationStatusException("This pet is not available for adoption");
         }
 
-        checkDuplicateApplication(pet.getId(), applicant.getId());
+        // Contact details are copied into the application, so the full user is loaded here
+        User applicantUser = userRepository.findById(applicant.getId())
+                .orElseThrow(() -> new UserNotFoundException("User not found with id: " + applicant.getId()));
 
         AdoptionApplication application = adoptionApplicationMapper.toEntity(request);
         application.setPetId(pet.getId());
         application.setApplicantId(applicant.getId());
         application.setPetName(pet.getName());
-        application.setFirstName(applicant.getFirstName());
-        application.setLastName(applicant.getLastName());
-        application.setEmail(applicant.getEmail());
-        application.setPhoneNumber(applicant.getPhoneNumber());
+        application.setStaffId(pet.getStaffId());
+        application.setFirstName(applicantUser.getFirstName());
+        application.setLastName(applicantUser.getLastName());
+        application.setEmail(applicantUser.getEmail());
+        application.setPhoneNumber(applicantUser.getPhoneNumber());
 
         // Set submitted time if not a draft
         if (Boolean.TRUE.equals(request.getIsDraft())) {
@@ -61,7 +97,7 @@ public class AdoptionApplicationServiceImpl implements AdoptionApplicationServic
             application.setSubmittedAt(LocalDateTime.now());
         }
 
-        AdoptionApplication saved = applicationRepository.save(application);
+        AdoptionApplication saved = createUnique(application);
         log.info("Created adoption application {} with status {}", saved.getId(), saved.getStatus());
 
         return adoptionApplicationMapper.toAdoptionApplicationDto(saved);
@@ -69,55 +105,61 @@ public class AdoptionApplicationServiceImpl implements AdoptionApplicationServic
 
 
     @Override
-    public AdoptionApplicationDto updateApplication(String applicationId, AdoptionApplicationUpdateRequest request, User applicant) {
+    public AdoptionApplicationDto updateApplication(String applicationId, AdoptionApplicationUpdateRequest request, AuthenticatedUser applicant) {
         log.info("Updating adoption application {} by user {}", applicationId, applicant.getUsername());
 
-        AdoptionApplication application = applicationRepository.findById(applicationId)
-                .orElseThrow(() -> new ApplicationNotFoundException("Application not found: " + applicationId));
+        // Comments are appended to what was read, so a conflicting save is retried on the fresh application
+        return optimisticLockRetryTemplate.invoke(() -> {
+            AdoptionApplication application = applicationRepository.findById(applicationId)
+                    .orElseThrow(() -> new ApplicationNotFoundException("Application not found: " + applicationId));
 
-        if (!application.getApplicantId().equals(applicant.getId())) {
-            throw new UnauthorizedException("You can only update your own applications");
-        }
+            if (!application.getApplicantId().equals(applicant.getId())) {
+                throw new UnauthorizedException("You can only update your own applications");
+            }
 
-        // Can only update draft applications
-        if (!application.getStatus().equals(AdoptionApplicationStatus.DRAFT)) {
-            throw new InvalidApplicationStatusException("Only draft applications can be updated");
-        }
+            // Can only update draft applications
+            if (!application.getStatus().equals(AdoptionApplicationStatus.DRAFT)) {
+                throw new InvalidApplicationStatusException("Only draft applications can be updated");
+            }
 
-        String currentAdditionalComments = getAdditionalComments(application, request.getAdditionalComments());
-        if (currentAdditionalComments != null) {
-            application.setAdditionalComments(currentAdditionalComments);
-        }
+            String currentAdditionalComments = getAdditionalComments(application, request.getAdditionalComments());
+            if (currentAdditionalComments != null) {
+                application.setAdditionalComments(currentAdditionalComments);
+            }
 
-        adoptionApplicationMapper.updateEntity(application, request);
+            adoptionApplicationMapper.updateEntity(application, request);
 
-        AdoptionApplication updated = applicationRepository.save(application);
-        log.info("Updated adoption application {}", updated.getId());
+            AdoptionApplication updated = applicationRepository.save(application);
+            log.info("Updated adoption application {}", updated.getId());
 
-        return adoptionApplicationMapper.toAdoptionApplicationDto(updated);
+            return adoptionApplicationMapper.toAdoptionApplicationDto(updated);
+        });
     }
 
     @Override
-    public AdoptionApplicationDto submitApplication(String applicationId, User applicant) {
+    public AdoptionApplicationDto submitApplication(String applicationId, AuthenticatedUser applicant) {
         log.info("Submitting adoption application {} by user {}", applicationId, applicant.getUsername());
 
-        AdoptionApplication existingApplication = applicationRepository.findById(applicationId)
+        // The application id is unique per pet and applicant, so the draft needs no duplicate check
+        // and submitting is a single guarded update
+        AdoptionApplication changes = AdoptionApplication.builder()
+                .status(AdoptionApplicationStatus.SUBMITTED)
+                .submittedAt(LocalDateTime.now())
+                .build();
+
+        ConditionalUpdater.Outcome<AdoptionApplication> outcome = transition(applicationId, changes)
+                .require("applicantId", List.of(applicant.getId()))
+                .require("status", List.of(AdoptionApplicationStatus.DRAFT))
+                .execute()
                 .orElseThrow(() -> new ApplicationNotFoundException("Application not found: " + applicationId));
 
-        if (!existingApplication.getApplicantId().equals(applicant.getId())) {
-            throw new UnauthorizedException("You can only submit your own applications");
-        }
-
-        if (!existingApplication.getStatus().equals(AdoptionApplicationStatus.DRAFT)) {
+        AdoptionApplication submitted = outcome.document();
+        if (!outcome.applied()) {
+            if (!submitted.getApplicantId().equals(applicant.getId())) {
+                throw new UnauthorizedException("You can only submit your own applications");
+            }
             throw new InvalidApplicationStatusException("Only draft applications can be submitted");
         }
-
-        checkDuplicateApplication(existingApplication.getPetId(), existingApplication.getApplicantId());
-
-        existingApplication.setStatus(AdoptionApplicationStatus.SUBMITTED);
-        existingApplication.setSubmittedAt(LocalDateTime.now());
-
-        AdoptionApplication submitted = applicationRepository.save(existingApplication);
         log.info("Submitted adoption application {}", submitted.getId());
 
         notificationService.sendSubmitConfirmation(applicant.getEmail(), submitted);
@@ -126,7 +168,7 @@ public class AdoptionApplicationServiceImpl implements AdoptionApplicationServic
     }
 
     @Override
-    public AdoptionApplicationDto getApplicationById(String applicationId, User userPrincipal) {
+    public AdoptionApplicationDto getApplicationById(String applicationId, AuthenticatedUser userPrincipal) {
         log.info("Getting adoption application {} for user {}", applicationId, userPrincipal.getUsername());
 
         AdoptionApplication existingApplication = applicationRepository.findById(applicationId)
@@ -141,7 +183,7 @@ public class AdoptionApplicationServiceImpl implements AdoptionApplicationServic
     }
 
     @Override
-    public Page<AdoptionApplicationDto> getMyApplications(User applicant, Pageable pageable) {
+    public Page<AdoptionApplicationDto> getMyApplications(AuthenticatedUser applicant, Pageable pageable) {
         log.info("Getting applications for user {}", applicant.getUsername());
         return applicationRepository.findByApplicantId(applicant.getId(), pageable)
                 .map(adoptionApplicationMapper::toAdoptionApplicationDto);
@@ -152,7 +194,7 @@ public class AdoptionApplicationServiceImpl implements AdoptionApplicationServic
         log.info("Getting applications for pet {}", petId);
 
         // Verify pet exists
-        petRepository.findById(petId)
+        petDetailCache.findById(petId)
                 .orElseThrow(() -> new PetNotFoundException("Pet not found: " + petId));
 
         Page<AdoptionApplication> applications = applicationRepository.findAllByPetId(petId, pageable);
@@ -174,57 +216,74 @@ public class AdoptionApplicationServiceImpl implements AdoptionApplicationServic
     }
 
     @Override
-    public AdoptionApplicationDto updateApplicationStatus(String applicationId, AdoptionApplicationUpdateStatusRequest request, User staff) {
+    public AdoptionApplicationDto updateApplicationStatus(String applicationId, AdoptionApplicationUpdateStatusRequest request, AuthenticatedUser staff) {
         log.info("Updating status of application {} to {} by staff {}", applicationId, request.getStatus(), staff.getUsername());
 
-        AdoptionApplication application = applicationRepository.findById(applicationId)
-                .orElseThrow(() -> new ApplicationNotFoundException("Application not found: " + applicationId));
+        if (request.getStatus() == AdoptionApplicationStatus.APPROVED) {
+            AdoptionApplication approved = approve(applicationId, request.getStaffNotes());
+            notificationService.sendStatusChanged(approved);
+            return adoptionApplicationMapper.toAdoptionApplicationDto(approved);
+        }
 
-        application.setStatus(request.getStatus());
+        // Staff notes are appended on the shard, the rest of the application is not reindexed
+        AdoptionApplication changes = AdoptionApplication.builder()
+                .status(request.getStatus())
+                .build();
 
-        String currentStaffNotes = getStaffNotes(application, request.getStaffNotes());
-        if (currentStaffNotes != null) {
-            application.setStaffNotes(currentStaffNotes);
-        }
+        // The allowed current statuses are checked in the same update
+        ConditionalUpdater.Outcome<AdoptionApplication> outcome = transition(applicationId, changes)
+                .require("status", allowedFrom(request.getStatus()))
+                .append("staffNotes", request.getStaffNotes())
+                .execute()
+                .orElseThrow(() -> new ApplicationNotFoundException("Application not found: " + applicationId));
 
-        AdoptionApplication updated = applicationRepository.save(application);
+        AdoptionApplication updated = outcome.document();
+        if (!outcome.applied()) {
+            throw new InvalidApplicationStatusException(
+                    "A " + updated.getStatus() + " application cannot be set to " + request.getStatus());
+        }
         log.info("Updated application {} status to {}", updated.getId(), updated.getStatus());
 
+        notificationService.sendStatusChanged(updated);
+
         return adoptionApplicationMapper.toAdoptionApplicationDto(updated);
     }
 
     @Override
-    public AdoptionApplicationDto withdrawApplication(String applicationId, User applicant) {
+    public AdoptionApplicationDto withdrawApplication(String applicationId, AuthenticatedUser applicant) {
         log.info("Withdrawing application {} by user {}", applicationId, applicant.getUsername());
 
-        AdoptionApplication application = applicationRepository.findById(applicationId)
-                .orElseThrow(() -> new ResourceNotFoundException("Application not found: " + applicationId));
-
-        // Verify ownership
-        if (!application.getApplicantId().equals(applicant.getId())) {
-            throw new UnauthorizedException("You can only withdraw your own applications");
-        }
+        AdoptionApplication changes = AdoptionApplication.builder()
+                .status(AdoptionApplicationStatus.WITHDRAWN)
+                .build();
 
-        // Can only withdraw submitted applications
-        if (application.getStatus().equals(AdoptionApplicationStatus.DRAFT)) {
-            throw new InvalidApplicationStatusException("Draft applications should be deleted, not withdrawn");
-        }
+        // Own, submitted applications only: checked and written in one update
+        ConditionalUpdater.Outcome<AdoptionApplication> outcome = transition(applicationId, changes)
+                .require("applicantId", List.of(applicant.getId()))
+                .require("status", EnumSet.complementOf(EnumSet.of(
+                        AdoptionApplicationStatus.DRAFT, AdoptionApplicationStatus.WITHDRAWN)))
+                .execute()
+                .orElseThrow(() -> new ApplicationNotFoundException("Application not found: " + applicationId));
 
-        if (application.getStatus().equals(AdoptionApplicationStatus.WITHDRAWN)) {
+        AdoptionApplication withdrawn = outcome.document();
+        if (!outcome.applied()) {
+            if (!withdrawn.getApplicantId().equals(applicant.getId())) {
+                throw new UnauthorizedException("You can only withdraw your own applications");
+            }
+            if (withdrawn.getStatus().equals(AdoptionApplicationStatus.DRAFT)) {
+                throw new InvalidApplicationStatusException("Draft applications should be deleted, not withdrawn");
+            }
             throw new InvalidApplicationStatusException("Application has already been withdrawn");
         }
-
-        // Update status
-        application.setStatus(AdoptionApplicationStatus.WITHDRAWN);
-
-        AdoptionApplication withdrawn = applicationRepository.save(application);
         log.info("Withdrew application {}", withdrawn.getId());
 
+        notificationService.sendWithdrawn(withdrawn);
+
         return adoptionApplicationMapper.toAdoptionApplicationDto(withdrawn);
     }
 
     @Override
-    public void deleteApplication(String applicationId, User applicant) {
+    public void deleteApplication(String applicationId, AuthenticatedUser applicant) {
         log.info("Deleting application {} by user {}", applicationId, applicant.getUsername());
 
         AdoptionApplication application = applicationRepository.findById(applicationId)
@@ -243,37 +302,134 @@ public class AdoptionApplicationServiceImpl implements AdoptionApplicationServic
         log.info("Deleted application {}", applicationId);
     }
 
-    // TODO create ValidatorService component for AdoptionApplicationService and PetService
-    private void checkDuplicateApplication(String petId, String applicantId) {
-        // Check if user already has a submitted (non-draft) application for this pet
-        Optional<AdoptionApplication> optionalAdoptionApplication = applicationRepository
-                .findByPetIdAndApplicantId(
-                        petId,
-                        applicantId
-                );
-        if (optionalAdoptionApplication.isPresent()
-                && !optionalAdoptionApplication.get().getStatus().equals(AdoptionApplicationStatus.DRAFT)) {
-            throw new DuplicateApplicationException("You have already submitted an application for this pet");
+    /**
+     * Approve a submitted or under review application, then mark its pet adopted.
+     * The approval requires the status the application was read with, so a draft, withdrawn or rejected
+     * application never adopts a pet; when the pet cannot be adopted the application is set back to that status.
+     * Approving an approved application again only appends the staff notes.
+     */
+    private AdoptionApplication approve(String applicationId, String staffNotes) {
+        Approval approval = optimisticLockRetryTemplate.invoke(() -> {
+            AdoptionApplication application = applicationRepository.findById(applicationId)
+                    .orElseThrow(() -> new ApplicationNotFoundException("Application not found: " + applicationId));
+            AdoptionApplicationStatus previousStatus = application.getStatus();
+            if (!allowedFrom(AdoptionApplicationStatus.APPROVED).contains(previousStatus)) {
+                throw new InvalidApplicationStatusException("Only submitted or under review applications can be approved");
+            }
+
+            AdoptionApplication changes = AdoptionApplication.builder()
+                    .status(AdoptionApplicationStatus.APPROVED)
+                    .build();
+            ConditionalUpdater.Outcome<AdoptionApplication> outcome = transition(applicationId, changes)
+                    .require("status", List.of(previousStatus))
+                    .append("staffNotes", staffNotes)
+                    .execute()
+                    .orElseThrow(() -> new ApplicationNotFoundException("Application not found: " + applicationId));
+            if (!outcome.applied()) {
+                // Changed since it was read, retried on the fresh application
+                throw new OptimisticLockingFailureException("Application " + applicationId + " changed while being approved");
+            }
+            return new Approval(outcome.document(), previousStatus);
+        });
+
+        if (approval.previousStatus() == AdoptionApplicationStatus.APPROVED) {
+            return approval.application();
+        }
+        try {
+            adoptPet(approval.application().getPetId());
+        } catch (RuntimeException e) {
+            revertApproval(applicationId, approval.previousStatus());
+            throw e;
+        }
+        return approval.application();
+    }
+
+    private void revertApproval(String applicationId, AdoptionApplicationStatus previousStatus) {
+        AdoptionApplication changes = AdoptionApplication.builder()
+                .status(previousStatus)
+                .build();
+        try {
+            transition(applicationId, changes)
+                    .require("status", List.of(AdoptionApplicationStatus.APPROVED))
+                    .execute();
+            log.info("Application {} set back to {}, its pet could not be adopted", applicationId, previousStatus);
+        } catch (RuntimeException e) {
+            log.error("Could not set application {} back to {} after its pet could not be adopted",
+                    applicationId, previousStatus, e);
         }
     }
 
     /**
-     * Get the staff notes that the application to be updated with
+     * Mark the pet of an approved application adopted. The status check and the write are one scripted update,
+     * so of two applications approved for the same pet at the same time only the first one succeeds.
      */
-    private String getStaffNotes(AdoptionApplication application, String staffNotes) {
-        // request staff notes is empty, if the application staff notes is null then return null, otherwise
-        // just return the original staff notes
-        if (staffNotes == null) {
-            return application.getStaffNotes() == null ? null : application.getStaffNotes();
+    private void adoptPet(String petId) {
+        Pet changes = new Pet();
+        changes.setStatus(PetStatus.ADOPTED);
+
+        ConditionalUpdater.Outcome<Pet> outcome = conditionalUpdater.update(Pet.class, petId)
+                .require("status", List.of(PetStatus.AVAILABLE, PetStatus.ON_HOLD))
+                .set(changes)
+                .execute()
+                .orElseThrow(() -> new PetNotFoundException("Pet not found: " + petId));
+
+        if (!outcome.applied()) {
+            throw new InvalidApplicationStatusException("The pet is no longer available, another application may have been approved");
         }
-        // application staff notes is empty, but request staff notes is not empty just return that
-        if (application.getStaffNotes() == null) {
-            return staffNotes;
+        petDetailCache.put(outcome.document());
+        petSearchResultCache.evictSpecies(outcome.document().getSpecies());
+        log.info("Pet {} adopted", petId);
+    }
+
+    /**
+     * Statuses an application may have for staff to set the target status
+     *
+     * @throws InvalidApplicationStatusException when staff cannot set the target status at all
+     */
+    private static Set<AdoptionApplicationStatus> allowedFrom(AdoptionApplicationStatus target) {
+        Set<AdoptionApplicationStatus> allowed = staffTransitions.get(target);
+        if (allowed == null) {
+            throw new InvalidApplicationStatusException("Staff cannot set an application to " + target);
         }
-        // both are non-empty, concatenate them
-        return application.getStaffNotes() + "\n" + staffNotes;
+        return allowed;
     }
 
+    /**
+     * Scripted partial update of an application's status, see {@link ConditionalUpdater}
+     */
+    private ConditionalUpdater.Update<AdoptionApplication> transition(String applicationId, AdoptionApplication changes) {
+        return conditionalUpdater.update(AdoptionApplication.class, applicationId)
+                .set(changes);
+    }
+
+    /**
+     * An applicant has at most one application per pet: the id is derived from both,
+     * and op_type=create lets Elasticsearch reject a second one atomically, without a search first
+     */
+    private static String applicationId(String petId, String applicantId) {
+        return UUID.nameUUIDFromBytes((petId + ":" + applicantId).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private AdoptionApplication createUnique(AdoptionApplication application) {
+        application.setId(applicationId(application.getPetId(), application.getApplicantId()));
+        IndexQuery create = new IndexQueryBuilder()
+                .withId(application.getId())
+                .withObject(application)
+                .withOpType(IndexQuery.OpType.CREATE)
+                .build();
+        try {
+            // Runs the auditing callbacks and sets _seq_no/_primary_term on the application, like save()
+            elasticsearchOperations.index(create, elasticsearchOperations.getIndexCoordinatesFor(AdoptionApplication.class));
+            return application;
+        } catch (VersionConflictException e) {
+            throw new DuplicateApplicationException("You already have an application for this pet");
+        } catch (UncategorizedElasticsearchException e) {
+            if (Integer.valueOf(HttpStatus.CONFLICT.value()).equals(e.getStatusCode())) {
+                throw new DuplicateApplicationException("You already have an application for this pet");
+            }
+            throw e;
+        }
+    }
 
     /**
      * Get the additional comments that the application to be updated with
@@ -0,0 +1,179 @@
+package com.devtiro.pets.services.impl;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.InlineGet;
+import co.elastic.clients.elasticsearch._types.Result;
+import co.elastic.clients.elasticsearch.core.UpdateResponse;
+import co.elastic.clients.json.JsonData;
+import com.devtiro.pets.domain.entity.Auditing;
+import com.fasterxml.jackson.core.type.TypeReference;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Partial updates through the Elasticsearch Update API: preconditions are checked and the changes applied
+ * by a script on the shard, in a single round trip and without reindexing the rest of the document.
+ * The response carries the document's source after the update, or as it is when a precondition failed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConditionalUpdater {
+
+    /**
+     * Every field in params.require must hold one of the listed values, otherwise the update is a noop.
+     * params.changes are written over the source and params.append is added to text fields on a new line.
+     * Values arrive as params and the source never changes, so Elasticsearch compiles the script once.
+     */
+    private static final String script = """
+            boolean allowed = true;
+            for (def entry : params.require.entrySet()) {
+                if (!entry.getValue().contains(ctx._source[entry.getKey()])) {
+                    allowed = false;
+                }
+            }
+            if (allowed) {
+                ctx._source.putAll(params.changes);
+                for (def entry : params.append.entrySet()) {
+                    def current = ctx._source[entry.getKey()];
+                    ctx._source[entry.getKey()] = current == null ? entry.getValue() : current + params.newline + entry.getValue();
+                }
+            } else {
+                ctx.op = 'none';
+            }
+            """;
+
+    private static final Type sourceType = new TypeReference<Map<String, Object>>() {}.getType();
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final AuditorAware<String> auditorAware;
+
+    @Value("${optimistic-retry.max-retries:3}")
+    private int retryOnConflict;
+
+    /**
+     * @param document the document after the update, with its _seq_no/_primary_term
+     * @param applied  false when a precondition failed and the document was left unchanged
+     */
+    public record Outcome<T>(T document, boolean applied) {
+    }
+
+    /**
+     * Builds one conditional update of a document of the given entity type
+     */
+    public <T> Update<T> update(Class<T> entityType, String id) {
+        return new Update<>(entityType, id);
+    }
+
+    public final class Update<T> {
+
+        private final Class<T> entityType;
+        private final String id;
+        private final Map<String, List<String>> require = new LinkedHashMap<>();
+        private final Map<String, String> append = new LinkedHashMap<>();
+        private T changes;
+
+        private Update(Class<T> entityType, String id) {
+            this.entityType = entityType;
+            this.id = id;
+        }
+
+        /**
+         * Only update when the field currently holds one of the values, enums are compared by name
+         */
+        public Update<T> require(String field, Collection<?> allowedValues) {
+            require.put(field, allowedValues.stream().map(v -> v instanceof Enum<?> e ? e.name() : String.valueOf(v)).toList());
+            return this;
+        }
+
+        /**
+         * Fields to write, given as a partial entity so values are stored in the entity's mapped format.
+         * Null fields are left as they are.
+         */
+        public Update<T> set(T partialEntity) {
+            this.changes = partialEntity;
+            return this;
+        }
+
+        /**
+         * Add a line to a text field, null values are ignored
+         */
+        public Update<T> append(String field, String text) {
+            if (text != null) {
+                append.put(field, text);
+            }
+            return this;
+        }
+
+        /**
+         * @return empty when the document does not exist
+         */
+        public Optional<Outcome<T>> execute() {
+            String index = elasticsearchOperations.getIndexCoordinatesFor(entityType).getIndexName();
+
+            // The update bypasses Spring Data auditing, so updatedBy/updatedAt are set here
+            if (changes instanceof Auditing audited) {
+                auditorAware.getCurrentAuditor().ifPresent(audited::setUpdatedBy);
+                audited.setUpdatedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+            }
+            Document changedFields = elasticsearchOperations.getElasticsearchConverter().mapObject(changes);
+            changedFields.remove("_class");
+
+            Map<String, JsonData> params = Map.of(
+                    "require", JsonData.of(require),
+                    "changes", JsonData.of(changedFields),
+                    "append", JsonData.of(append),
+                    "newline", JsonData.of("\n"));
+
+            try {
+                UpdateResponse<Map<String, Object>> response = elasticsearchClient.update(u -> u
+                        .index(index)
+                        .id(id)
+                        // Concurrent writes between the shard's get and index are retried there, with the script run again
+                        .retryOnConflict(retryOnConflict)
+                        .script(s -> s
+                                .source(src -> src.scriptString(script))
+                                .lang("painless")
+                                .params(params))
+                        .source(src -> src.fetch(true)), sourceType);
+
+                InlineGet<Map<String, Object>> current = response.get();
+                Document document = Document.from(current.source());
+                document.setId(id);
+                document.setSeqNo(current.seqNo());
+                document.setPrimaryTerm(current.primaryTerm());
+
+                T entity = elasticsearchOperations.getElasticsearchConverter().read(entityType, document);
+                return Optional.of(new Outcome<>(entity, response.result() != Result.NoOp));
+
+            } catch (ElasticsearchException e) {
+                if (e.status() == 404) {
+                    return Optional.empty();
+                }
+                if (e.status() == 409) {
+                    throw new OptimisticLockingFailureException("Concurrent update of " + index + " " + id, e);
+                }
+                log.error("Conditional update of {} {} failed", index, id, e);
+                throw new RuntimeException("Error updating " + index + " " + id, e);
+            } catch (IOException e) {
+                log.error("Conditional update of {} {} failed", index, id, e);
+                throw new RuntimeException("Error updating " + index + " " + id, e);
+            }
+        }
+    }
+
+}
@@ -3,10 +3,10 @@ package com.devtiro.pets.services.impl;
 import com.devtiro.pets.domain.dto.MedicalRecordDto;
 import com.devtiro.pets.domain.dto.MedicalRecordUpdateRequest;
 import com.devtiro.pets.domain.entity.MedicalRecord;
-import com.devtiro.pets.domain.entity.User;
 import com.devtiro.pets.exceptions.MedicalRecordNotFoundException;
 import com.devtiro.pets.mappers.MedicalRecordMapper;
 import com.devtiro.pets.repositories.MedicalRecordRepository;
+import com.devtiro.pets.security.AuthenticatedUser;
 import com.devtiro.pets.services.MedicalRecordService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -32,7 +32,7 @@ public class MedicalRecordServiceImpl implements MedicalRecordService {
     }
 
     @Override
-    public MedicalRecordDto addMedicalRecord(String petId, MedicalRecordUpdateRequest request, User staff) {
+    public MedicalRecordDto addMedicalRecord(String petId, MedicalRecordUpdateRequest request, AuthenticatedUser staff) {
 
         MedicalRecord medicalRecord = medicalRecordMapper.toMedicalRecord(request);
         medicalRecord.setPetId(petId);
@@ -0,0 +1,284 @@
+package com.devtiro.pets.services.impl;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkIngester;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkListener;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.devtiro.pets.domain.dto.*;
+import com.devtiro.pets.domain.entity.Pet;
+import com.devtiro.pets.domain.entity.PetSize;
+import com.devtiro.pets.domain.entity.PetStatus;
+import com.devtiro.pets.domain.entity.Species;
+import com.devtiro.pets.domain.entity.User;
+import com.devtiro.pets.exceptions.UserNotFoundException;
+import com.devtiro.pets.mappers.PetMapper;
+import com.devtiro.pets.repositories.UserRepository;
+import com.devtiro.pets.security.AuthenticatedUser;
+import com.devtiro.pets.services.PetBulkImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PetBulkImportServiceImpl implements PetBulkImportService {
+
+    private static final String petIndex = "pets";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final PetMapper petMapper;
+    private final UserRepository userRepository;
+    private final PetSearchResultCache petSearchResultCache;
+
+    @Value("${bulk-import.max-operations:1000}")
+    private int maxOperations;
+
+    @Value("${bulk-import.max-size:5MB}")
+    private DataSize maxSize;
+
+    @Value("${bulk-import.flush-interval:1s}")
+    private Duration flushInterval;
+
+    @Value("${bulk-import.max-concurrent-requests:2}")
+    private int maxConcurrentRequests;
+
+    @Override
+    public PetBulkImportResponse importPets(InputStream input, BulkImportFormat format, AuthenticatedUser staff) throws IOException {
+
+        // Staff name and email are stored on every pet, load the user once for the whole upload
+        User staffUser = userRepository.findById(staff.getId())
+                .orElseThrow(() -> new UserNotFoundException("User not found with id: " + staff.getId()));
+
+        // Rows complete out of order from the ingester's flush threads, keep them sorted by row number
+        Map<Integer, PetBulkImportRowResult> results = new ConcurrentSkipListMap<>();
+        Set<Species> importedSpecies = EnumSet.noneOf(Species.class);
+
+        // add() blocks once maxConcurrentRequests bulks are in flight, which throttles reading the upload
+        BulkIngester<Integer> ingester = BulkIngester.of(b -> b
+                .client(elasticsearchClient)
+                .maxOperations(maxOperations)
+                .maxSize(maxSize.toBytes())
+                .maxConcurrentRequests(maxConcurrentRequests)
+                .flushInterval(flushInterval.toMillis(), TimeUnit.MILLISECONDS)
+                .listener(new RowResultListener(results)));
+
+        // Bulk indexing bypasses the repository, so the auditing fields are set here
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            List<String> header = null;
+            int row = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == BulkImportFormat.CSV && header == null) {
+                    header = parseCsvLine(line);
+                    continue;
+                }
+                row++;
+
+                PetCreateRequest request;
+                try {
+                    request = format == BulkImportFormat.CSV
+                            ? fromCsv(header, parseCsvLine(line))
+                            : objectMapper.readValue(line, PetCreateRequest.class);
+                } catch (Exception e) {
+                    results.put(row, invalid(row, List.of("Malformed row: " + e.getMessage())));
+                    continue;
+                }
+
+                Set<ConstraintViolation<PetCreateRequest>> violations = validator.validate(request);
+                if (!violations.isEmpty()) {
+                    results.put(row, invalid(row, violations.stream()
+                            .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                            .sorted()
+                            .toList()));
+                    continue;
+                }
+
+                Pet pet = petMapper.toPet(request, staffUser);
+                pet.setId(UUID.randomUUID().toString());
+                pet.setStatus(PetStatus.AVAILABLE);
+                pet.setCreatedBy(staffUser.getUsername());
+                pet.setCreatedAt(now);
+                pet.setUpdatedBy(staffUser.getUsername());
+                pet.setUpdatedAt(now);
+                importedSpecies.add(pet.getSpecies());
+
+                // Convert through Spring Data so the stored document matches what the repository writes
+                Document document = elasticsearchOperations.getElasticsearchConverter().mapObject(pet);
+                ingester.add(BulkOperation.of(op -> op
+                        .index(i -> i
+                                .index(petIndex)
+                                .id(pet.getId())
+                                .document(document))), row);
+            }
+        } finally {
+            // Flushes the last batch and waits for all in-flight requests
+            ingester.close();
+            if (!importedSpecies.isEmpty()) {
+                petSearchResultCache.evictSpecies(importedSpecies.toArray(Species[]::new));
+            }
+        }
+
+        List<PetBulkImportRowResult> rowResults = new ArrayList<>(results.values());
+        log.info("Bulk import by {} finished with {} rows", staffUser.getUsername(), rowResults.size());
+
+        return PetBulkImportResponse.builder()
+                .total(rowResults.size())
+                .created(count(rowResults, PetBulkImportRowResult.Status.CREATED))
+                .invalid(count(rowResults, PetBulkImportRowResult.Status.INVALID))
+                .failed(count(rowResults, PetBulkImportRowResult.Status.FAILED))
+                .results(rowResults)
+                .build();
+    }
+
+    private PetCreateRequest fromCsv(List<String> header, List<String> values) {
+        if (header.size() != values.size()) {
+            throw new IllegalArgumentException("expected " + header.size() + " columns but got " + values.size());
+        }
+        Map<String, String> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String value = values.get(i).trim();
+            columns.put(header.get(i).trim(), value.isEmpty() ? null : value);
+        }
+
+        return PetCreateRequest.builder()
+                .name(columns.get("name"))
+                .description(columns.get("description"))
+                .species(parse(columns.get("species"), Species::valueOf))
+                .age(parse(columns.get("age"), Integer::valueOf))
+                .petSize(parse(columns.get("petSize"), PetSize::valueOf))
+                .address(AddressDto.builder()
+                        .street(columns.get("street"))
+                        .city(columns.get("city"))
+                        .state(columns.get("state"))
+                        .zipCode(columns.get("zipCode"))
+                        .build())
+                .location(GeoPointDto.builder()
+                        .lat(parse(columns.get("lat"), Double::valueOf))
+                        .lon(parse(columns.get("lon"), Double::valueOf))
+                        .build())
+                .build();
+    }
+
+    private static <T> T parse(String value, Function<String, T> parser) {
+        return value == null ? null : parser.apply(value);
+    }
+
+    /**
+     * Split a single CSV line, double quotes enclose values with commas and "" escapes a quote.
+     * Records spanning multiple lines are not supported.
+     */
+    private static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted value");
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static PetBulkImportRowResult invalid(int row, List<String> errors) {
+        return PetBulkImportRowResult.builder()
+                .row(row)
+                .status(PetBulkImportRowResult.Status.INVALID)
+                .errors(errors)
+                .build();
+    }
+
+    private static int count(List<PetBulkImportRowResult> results, PetBulkImportRowResult.Status status) {
+        return (int) results.stream().filter(r -> r.getStatus() == status).count();
+    }
+
+    /**
+     * Records the outcome of every row once its bulk request completes.
+     * The ingester passes the row numbers in the same order as the response items.
+     */
+    private record RowResultListener(Map<Integer, PetBulkImportRowResult> results) implements BulkListener<Integer> {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request, List<Integer> rows) {
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, List<Integer> rows, BulkResponse response) {
+            for (int i = 0; i < rows.size(); i++) {
+                BulkResponseItem item = response.items().get(i);
+                int row = rows.get(i);
+                results.put(row, PetBulkImportRowResult.builder()
+                        .row(row)
+                        .id(item.id())
+                        .status(item.error() == null
+                                ? PetBulkImportRowResult.Status.CREATED
+                                : PetBulkImportRowResult.Status.FAILED)
+                        .errors(item.error() == null ? List.of() : List.of(item.error().reason()))
+                        .build());
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, List<Integer> rows, Throwable failure) {
+            log.error("Bulk request {} with {} pets failed", executionId, rows.size(), failure);
+            for (int row : rows) {
+                results.put(row, PetBulkImportRowResult.builder()
+                        .row(row)
+                        .status(PetBulkImportRowResult.Status.FAILED)
+                        .errors(List.of(String.valueOf(failure.getMessage())))
+                        .build());
+            }
+        }
+    }
+
+}
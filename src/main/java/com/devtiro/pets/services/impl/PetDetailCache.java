@@ -0,0 +1,92 @@
+package com.devtiro.pets.services.impl;
+
+import com.devtiro.pets.domain.entity.Pet;
+import com.devtiro.pets.repositories.PetRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Pet by id, backed by the "petDetails" Caffeine cache.
+ * Entries carry the document's _primary_term/_seq_no and an entry is only ever replaced by a newer one,
+ * so a read that started before a write cannot put the old pet back after the write cached the new one.
+ * Cached pets are shared between requests and must be treated as read-only.
+ */
+@Slf4j
+@Component
+public class PetDetailCache {
+
+    private final Cache<Object, Object> cache;
+    private final PetRepository petRepository;
+    private final SingleFlight singleFlight;
+    private final boolean enabled;
+
+    public PetDetailCache(CacheManager cacheManager,
+                          PetRepository petRepository,
+                          SingleFlight singleFlight,
+                          @Value("${pet-detail-cache.enabled:true}") boolean enabled) {
+        this.cache = ((CaffeineCache) Objects.requireNonNull(cacheManager.getCache("petDetails"))).getNativeCache();
+        this.petRepository = petRepository;
+        this.singleFlight = singleFlight;
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param pet null for a deleted pet
+     */
+    record VersionedPet(Pet pet, long primaryTerm, long seqNo) {
+
+        static final VersionedPet DELETED = new VersionedPet(null, Long.MAX_VALUE, Long.MAX_VALUE);
+
+        boolean isNewerThan(VersionedPet other) {
+            return primaryTerm != other.primaryTerm ? primaryTerm > other.primaryTerm : seqNo > other.seqNo;
+        }
+    }
+
+    public Optional<Pet> findById(String petId) {
+        if (enabled && cache.getIfPresent(petId) instanceof VersionedPet cached) {
+            return Optional.ofNullable(cached.pet());
+        }
+        // Identical concurrent misses share one Elasticsearch get
+        Optional<Pet> pet = singleFlight.execute("petById", petId, () -> petRepository.findById(petId));
+        pet.ifPresent(this::put);
+        return pet;
+    }
+
+    /**
+     * Cache a pet as returned by a read or a save, unless a newer version is already cached
+     */
+    public void put(Pet pet) {
+        if (!enabled) {
+            return;
+        }
+        SeqNoPrimaryTerm version = pet.getSeqNoPrimaryTerm();
+        if (version == null) {
+            // Version unknown, the next read loads it again
+            cache.invalidate(pet.getId());
+            return;
+        }
+        VersionedPet entry = new VersionedPet(pet, version.primaryTerm(), version.sequenceNumber());
+        cache.asMap().merge(pet.getId(), entry, (current, candidate) ->
+                current instanceof VersionedPet cached && !entry.isNewerThan(cached) ? current : candidate);
+    }
+
+    /**
+     * Remember the pet as deleted, in-flight reads of the old document cannot bring it back
+     */
+    public void evictDeleted(String petId) {
+        if (!enabled) {
+            return;
+        }
+        cache.put(petId, VersionedPet.DELETED);
+        log.debug("Pet {} marked as deleted in the detail cache", petId);
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.devtiro.pets.services.impl;
+
+import com.devtiro.pets.domain.dto.MedicalRecordDto;
+import com.devtiro.pets.domain.dto.PetDto;
+import com.devtiro.pets.domain.dto.PetProfileDto;
+import com.devtiro.pets.domain.dto.PhotoDto;
+import com.devtiro.pets.domain.entity.Role;
+import com.devtiro.pets.exceptions.SearchTimeoutException;
+import com.devtiro.pets.security.AuthenticatedUser;
+import com.devtiro.pets.services.MedicalRecordService;
+import com.devtiro.pets.services.PetProfileService;
+import com.devtiro.pets.services.PetService;
+import com.devtiro.pets.services.PhotoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PetProfileServiceImpl implements PetProfileService {
+
+    private static final String PHOTOS = "photos";
+    private static final String MEDICAL_RECORDS = "medicalRecords";
+
+    private final PetService petService;
+    private final PhotoService photoService;
+    private final MedicalRecordService medicalRecordService;
+
+    @Qualifier("applicationTaskExecutor")
+    private final AsyncTaskExecutor taskExecutor;
+
+    @Value("${pet-profile.branch-timeout:2s}")
+    private Duration branchTimeout;
+
+    @Override
+    public PetProfileDto getPetProfile(String petId, AuthenticatedUser user) {
+
+        // All branches start before any is awaited, each one gets its own timeout
+        CompletableFuture<PetDto> pet = branch(() -> petService.getAvailablePetById(petId));
+        CompletableFuture<List<PhotoDto>> photos = branch(() -> photoService.getAllPhotosByPetId(petId));
+        CompletableFuture<List<MedicalRecordDto>> medicalRecords = user.getRole() == Role.STAFF
+                ? branch(() -> medicalRecordService.getAllMedicalRecordsByPetId(petId))
+                : CompletableFuture.completedFuture(null);
+
+        PetDto petDto;
+        try {
+            petDto = pet.join();
+        } catch (CompletionException e) {
+            // Without the pet there is no profile, drop the other branches
+            photos.cancel(false);
+            medicalRecords.cancel(false);
+            if (e.getCause() instanceof TimeoutException) {
+                throw new SearchTimeoutException("Pet " + petId + " not loaded within " + branchTimeout);
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        List<String> unavailable = new ArrayList<>();
+        return PetProfileDto.builder()
+                .pet(petDto)
+                .photos(partial(PHOTOS, petId, photos, unavailable))
+                .medicalRecords(partial(MEDICAL_RECORDS, petId, medicalRecords, unavailable))
+                .unavailable(unavailable)
+                .build();
+    }
+
+    private <T> CompletableFuture<T> branch(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(call, taskExecutor)
+                .orTimeout(branchTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Result of an optional branch, or null with the section marked unavailable
+     */
+    private <T> T partial(String section, String petId, CompletableFuture<T> branch, List<String> unavailable) {
+        try {
+            return branch.join();
+        } catch (CompletionException | CancellationException e) {
+            log.warn("Profile of pet {} is missing {}: {}", petId, section, e.getMessage());
+            unavailable.add(section);
+            return null;
+        }
+    }
+
+}
@@ -1,29 +1,50 @@
 package com.devtiro.pets.services.impl;
 
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import com.devtiro.pets.domain.dto.HitCountMode;
+import com.devtiro.pets.domain.dto.PetBatchSearchQuery;
+import com.devtiro.pets.domain.dto.PetBatchSearchResult;
 import com.devtiro.pets.domain.dto.PetDto;
+import com.devtiro.pets.domain.dto.PetFacetedSearchResponse;
+import com.devtiro.pets.domain.dto.PetSearchCursorResponse;
 import com.devtiro.pets.domain.dto.PetSearchRequest;
+import com.devtiro.pets.domain.dto.PetSliceResponse;
+import com.devtiro.pets.domain.dto.PetSummaryDto;
 import com.devtiro.pets.domain.entity.Pet;
 import com.devtiro.pets.domain.entity.PetStatus;
 import com.devtiro.pets.mappers.PetMapper;
 import com.devtiro.pets.services.PetSearchService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.*;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
 import org.springframework.data.elasticsearch.core.geo.GeoPoint;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 import org.springframework.data.elasticsearch.core.query.Criteria;
 import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
 import org.springframework.data.elasticsearch.core.query.GeoDistanceOrder;
 import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.data.geo.Distance;
 import org.springframework.data.geo.Metrics;
 import org.springframework.data.geo.Point;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service("criteria")
@@ -32,13 +53,95 @@ public class PetSearchCriteriaQueryService implements PetSearchService {
 
     private final PetMapper petMapper;
     private final ElasticsearchOperations elasticsearchOperations;
+    private final SearchCursorCodec searchCursorCodec;
+    @Qualifier("applicationTaskExecutor")
+    private final AsyncTaskExecutor taskExecutor;
+    private static final Duration pitKeepAlive = Duration.ofMinutes(1);
 
     public Page<PetDto> searchPets(PetSearchRequest request, Pageable pageable) {
+        SearchHits<Pet> searchHits = elasticsearchOperations.search(buildPageQuery(request, pageable), Pet.class);
+        return toPage(searchHits, request, pageable);
+    }
+
+    @Override
+    public PetSliceResponse searchPetsSlice(PetSearchRequest request, Pageable pageable, HitCountMode mode, int cap) {
+        Query query = buildPageQuery(request, pageable);
+        Integer trackTotalHitsUpTo = mode.trackTotalHitsUpTo(pageable, cap);
+        if (trackTotalHitsUpTo == null) {
+            query.setTrackTotalHits(true);
+        } else {
+            query.setTrackTotalHitsUpTo(trackTotalHitsUpTo);
+        }
+
+        SearchHits<Pet> searchHits = elasticsearchOperations.search(query, Pet.class);
+
+        List<PetDto> petDtos = searchHits.getSearchHits().stream()
+                .map(hit -> mapHitToDto(hit, request))
+                .toList();
+
+        return PetSliceResponse.of(petDtos, pageable, mode, searchHits.getTotalHits(),
+                searchHits.getTotalHitsRelation() == TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO);
+    }
+
+    @Override
+    public Page<PetSummaryDto> searchPetSummaries(PetSearchRequest request, Pageable pageable) {
+        Query query = buildPageQuery(request, pageable);
+        query.addSourceFilter(new FetchSourceFilter(true, PetSummaryDto.SOURCE_FIELDS.toArray(String[]::new), null));
+
+        // Read into the summary class directly, the full Pet is never built
+        SearchHits<PetSummaryDto> searchHits =
+                elasticsearchOperations.search(query, PetSummaryDto.class, IndexCoordinates.of("pets"));
+
+        List<PetSummaryDto> summaries = searchHits.getSearchHits().stream()
+                .map(hit -> {
+                    PetSummaryDto summary = hit.getContent();
+                    summary.setId(hit.getId());
+                    if (hasLocation(request) && summary.getLocation() != null) {
+                        double distance = calculateDistance(
+                                request.getLocation().getLat(),
+                                request.getLocation().getLon(),
+                                summary.getLocation().getLat(),
+                                summary.getLocation().getLon()
+                        );
+                        summary.setDistance(Math.round(distance * 100.0) / 100.0); // Round to 2 decimal places
+                    }
+                    return summary;
+                })
+                .toList();
+
+        return new PageImpl<>(summaries, pageable, searchHits.getTotalHits());
+    }
+
+    @Override
+    public List<PetBatchSearchResult> searchPetsBatch(List<PetBatchSearchQuery> queries) {
+        List<Pageable> pageables = queries.stream().map(PetBatchSearchQuery::toPageable).toList();
+        List<Query> searchQueries = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            searchQueries.add(buildPageQuery(queries.get(i).getFilter(), pageables.get(i)));
+        }
+
+        List<PetBatchSearchResult> results = new ArrayList<>();
+        try {
+            List<SearchHits<Pet>> searchHits = elasticsearchOperations.multiSearch(searchQueries, Pet.class);
+            for (int i = 0; i < queries.size(); i++) {
+                results.add(PetBatchSearchResult.of(i, toPage(searchHits.get(i), queries.get(i).getFilter(), pageables.get(i))));
+            }
+        } catch (RuntimeException e) {
+            // Spring Data fails the whole multi search when one query fails
+            log.warn("Batch search failed: {}", e.getMessage());
+            for (int i = 0; i < queries.size(); i++) {
+                results.add(PetBatchSearchResult.failed(i, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    private Query buildPageQuery(PetSearchRequest request, Pageable pageable) {
         // Build the search criteria
         Criteria elasticCriteria = buildSearchCriteria(request);
 
         // Build the query with sorting and pagination
-        Query query = buildSorting(elasticCriteria, request, pageable);
+        Query query = buildSorting(elasticCriteria, request, pageable.getSort());
 
         // Set pageable without sort, it was handled right before this
         Pageable pageableWithoutSort = PageRequest.of(
@@ -46,33 +149,119 @@ public class PetSearchCriteriaQueryService implements PetSearchService {
                 pageable.getPageSize()
         );
         query.setPageable(pageableWithoutSort);
+        return query;
+    }
 
-        SearchHits<Pet> searchHits = elasticsearchOperations.search(query, Pet.class);
-
+    private Page<PetDto> toPage(SearchHits<Pet> searchHits, PetSearchRequest request, Pageable pageable) {
         // Convert results to DTOs and calculate distances if geo search
         List<PetDto> petDtos = searchHits.getSearchHits().stream()
-                .map(hit -> {
-                    Pet pet = hit.getContent();
-                    PetDto dto = petMapper.toPetDto(pet);
-
-                    // Calculate and set distance if this is a geolocation search
-                    if (hasLocation(request)) {
-                        double distance = calculateDistance(
-                                request.getLocation().getLat(),
-                                request.getLocation().getLon(),
-                                pet.getLocation().getLat(),
-                                pet.getLocation().getLon()
-                        );
-                        dto.setDistance(Math.round(distance * 100.0) / 100.0); // Round to 2 decimal places
-                    }
-                    return dto;
-                })
+                .map(hit -> mapHitToDto(hit, request))
                 .toList();
 
         long totalHits = searchHits.getTotalHits();
         return new PageImpl<>(petDtos, pageable, totalHits);
     }
 
+    @Override
+    public CompletableFuture<Page<PetDto>> searchPetsAsync(PetSearchRequest request, Pageable pageable) {
+        // ElasticsearchOperations is blocking only, so the search runs on the application task executor
+        return CompletableFuture.supplyAsync(() -> searchPets(request, pageable), taskExecutor);
+    }
+
+    @Override
+    public PetFacetedSearchResponse searchPetsWithFacets(PetSearchRequest request, Pageable pageable) {
+        // Criteria queries have no aggregations or post_filter, the facet parts are native queries
+        NativeQueryBuilder queryBuilder = NativeQuery.builder()
+                .withQuery(PetSearchFacetQueries.availableOnly())
+                .withFilter(PetSearchFacetQueries.postFilter(request))
+                .withPageable(PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()))
+                .withSort(buildSorting(buildSearchCriteria(request), request, pageable.getSort()).getSort());
+        PetSearchFacetQueries.aggregations(request).forEach(queryBuilder::withAggregation);
+
+        SearchHits<Pet> searchHits = elasticsearchOperations.search(queryBuilder.build(), Pet.class);
+
+        List<PetDto> petDtos = searchHits.getSearchHits().stream()
+                .map(hit -> mapHitToDto(hit, request))
+                .toList();
+
+        Map<String, Aggregate> aggregations =
+                ((ElasticsearchAggregations) searchHits.getAggregations()).aggregationsAsMap().entrySet().stream()
+                        .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().aggregation().getAggregate()));
+
+        long totalHits = searchHits.getTotalHits();
+        return PetFacetedSearchResponse.builder()
+                .pets(petDtos)
+                .page(pageable.getPageNumber())
+                .size(pageable.getPageSize())
+                .totalElements(totalHits)
+                .totalPages((int) Math.ceil((double) totalHits / pageable.getPageSize()))
+                .facets(PetSearchFacetQueries.toFacets(aggregations))
+                .build();
+    }
+
+    @Override
+    public PetSearchCursorResponse searchPetsWithCursor(PetSearchRequest request, String cursor, int size, Sort sort) {
+        SearchCursorCodec.SearchCursor previous = cursor != null ? searchCursorCodec.decode(cursor) : null;
+        // The sort must stay the same for every page, otherwise the search_after values are meaningless
+        Sort cursorSort = previous != null ? previous.sort() : sort;
+        String pitId = previous != null
+                ? previous.pitId()
+                : elasticsearchOperations.openPointInTime(IndexCoordinates.of("pets"), pitKeepAlive, false);
+
+        CriteriaQuery query = buildSorting(buildSearchCriteria(request), request, cursorSort);
+        // Explicit tie-breaker so every hit has a unique, resumable position in the snapshot
+        query.addSort(Sort.by(Sort.Direction.ASC, "_shard_doc"));
+        // One extra hit is requested only to find out whether another page exists
+        query.setPageable(PageRequest.of(0, size + 1));
+        query.setPointInTime(new Query.PointInTime(pitId, pitKeepAlive));
+        query.setTrackTotalHits(false);
+        if (previous != null) {
+            query.setSearchAfter(previous.searchAfter());
+        }
+
+        SearchHits<Pet> searchHits = elasticsearchOperations.search(query, Pet.class);
+
+        List<SearchHit<Pet>> hits = searchHits.getSearchHits();
+        boolean hasNext = hits.size() > size;
+        List<SearchHit<Pet>> pageHits = hasNext ? hits.subList(0, size) : hits;
+
+        List<PetDto> petDtos = pageHits.stream()
+                .map(hit -> mapHitToDto(hit, request))
+                .toList();
+
+        String nextPitId = searchHits.getPointInTimeId() != null ? searchHits.getPointInTimeId() : pitId;
+        String nextCursor = null;
+        if (hasNext) {
+            nextCursor = searchCursorCodec.encode(nextPitId, pageHits.getLast().getSortValues(), cursorSort);
+        } else {
+            elasticsearchOperations.closePointInTime(nextPitId);
+        }
+
+        return PetSearchCursorResponse.builder()
+                .pets(petDtos)
+                .size(petDtos.size())
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private PetDto mapHitToDto(SearchHit<Pet> hit, PetSearchRequest request) {
+        Pet pet = hit.getContent();
+        PetDto dto = petMapper.toPetDto(pet);
+
+        // Calculate and set distance if this is a geolocation search
+        if (hasLocation(request)) {
+            double distance = calculateDistance(
+                    request.getLocation().getLat(),
+                    request.getLocation().getLon(),
+                    pet.getLocation().getLat(),
+                    pet.getLocation().getLon()
+            );
+            dto.setDistance(Math.round(distance * 100.0) / 100.0); // Round to 2 decimal places
+        }
+        return dto;
+    }
+
     private Criteria buildSearchCriteria(PetSearchRequest criteria) {
         List<Criteria> criteriaList = new ArrayList<>();
 
@@ -119,15 +308,15 @@ public class PetSearchCriteriaQueryService implements PetSearchService {
         return combinedCriteria;
     }
 
-    private Query buildSorting(Criteria criteria, PetSearchRequest request, Pageable pageable) {
+    private CriteriaQuery buildSorting(Criteria criteria, PetSearchRequest request, Sort sort) {
         CriteriaQuery query = new CriteriaQuery(criteria);
-        Optional<Sort.Order> explicitGeoOrder = pageable.getSort().stream()
+        Optional<Sort.Order> explicitGeoOrder = sort.stream()
                 .filter(order -> order.getProperty().equalsIgnoreCase("distance")
                         || order.getProperty().equalsIgnoreCase("closest"))
                 .findFirst();
 
         // Regular field sorting
-        for (Sort.Order order : pageable.getSort()) {
+        for (Sort.Order order : sort) {
             String prop = order.getProperty();
             Sort.Direction direction = order.getDirection();
 
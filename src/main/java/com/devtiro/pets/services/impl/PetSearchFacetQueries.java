@@ -0,0 +1,156 @@
+package com.devtiro.pets.services.impl;
+
+import co.elastic.clients.elasticsearch._types.DistanceUnit;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.AggregationRange;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.devtiro.pets.domain.dto.PetFacetBucket;
+import com.devtiro.pets.domain.dto.PetSearchFacets;
+import com.devtiro.pets.domain.dto.PetSearchRequest;
+import com.devtiro.pets.domain.entity.PetSize;
+import com.devtiro.pets.domain.entity.PetStatus;
+import com.devtiro.pets.domain.entity.Species;
+
+import java.util.*;
+
+/**
+ * Query parts of the faceted pet search, shared by both search implementations.
+ * The main query only selects available pets, the selected facet filters go into the post_filter,
+ * and every facet is aggregated inside a filter aggregation holding all the other facet filters.
+ */
+final class PetSearchFacetQueries {
+
+    private static final String SPECIES = "species";
+    private static final String PET_SIZE = "petSize";
+    private static final String AGE = "age";
+    private static final String DISTANCE = "distance";
+    private static final String BUCKETS = "buckets";
+    private static final double[] distanceBandsKm = {5, 10, 25, 50, 100};
+
+    private PetSearchFacetQueries() {
+    }
+
+    static Query availableOnly() {
+        return Query.of(q -> q.term(t -> t.field("status").value(PetStatus.AVAILABLE.name())));
+    }
+
+    static Query postFilter(PetSearchRequest request) {
+        return allOf(facetFilters(request).values());
+    }
+
+    /**
+     * Filters of the facets selected in the request, keyed by facet name
+     */
+    private static Map<String, Query> facetFilters(PetSearchRequest request) {
+        Map<String, Query> filters = new LinkedHashMap<>();
+
+        if (request.getSpecies() != null) {
+            filters.put(SPECIES, Query.of(q -> q.term(t -> t.field("species").value(request.getSpecies().name()))));
+        }
+        if (request.getPetSize() != null) {
+            filters.put(PET_SIZE, Query.of(q -> q.term(t -> t.field("petSize").value(request.getPetSize().name()))));
+        }
+        if (request.getMinAge() != null || request.getMaxAge() != null) {
+            filters.put(AGE, Query.of(q -> q.range(r -> r.number(n -> {
+                n.field("age");
+                if (request.getMinAge() != null) n.gte(request.getMinAge().doubleValue());
+                if (request.getMaxAge() != null) n.lte(request.getMaxAge().doubleValue());
+                return n;
+            }))));
+        }
+        if (hasLocation(request) && request.getDistance() != null) {
+            filters.put(DISTANCE, Query.of(q -> q.geoDistance(g -> g
+                    .field("location")
+                    .distance(request.getDistance() + "km")
+                    .location(l -> l.latlon(ll -> ll
+                            .lat(request.getLocation().getLat())
+                            .lon(request.getLocation().getLon()))))));
+        }
+        return filters;
+    }
+
+    static Map<String, Aggregation> aggregations(PetSearchRequest request) {
+        Map<String, Query> filters = facetFilters(request);
+        Map<String, Aggregation> aggregations = new LinkedHashMap<>();
+
+        aggregations.put(SPECIES, excludingOwnFilter(SPECIES, filters, Aggregation.of(a -> a
+                .terms(t -> t.field("species").size(Species.values().length)))));
+        aggregations.put(PET_SIZE, excludingOwnFilter(PET_SIZE, filters, Aggregation.of(a -> a
+                .terms(t -> t.field("petSize").size(PetSize.values().length)))));
+        aggregations.put(AGE, excludingOwnFilter(AGE, filters, Aggregation.of(a -> a
+                .histogram(h -> h.field("age").interval(1.0).minDocCount(1)))));
+
+        if (hasLocation(request)) {
+            aggregations.put(DISTANCE, excludingOwnFilter(DISTANCE, filters, Aggregation.of(a -> a
+                    .geoDistance(g -> g
+                            .field("location")
+                            .origin(o -> o.latlon(ll -> ll
+                                    .lat(request.getLocation().getLat())
+                                    .lon(request.getLocation().getLon())))
+                            .unit(DistanceUnit.Kilometers)
+                            .ranges(distanceRanges())))));
+        }
+        return aggregations;
+    }
+
+    static PetSearchFacets toFacets(Map<String, Aggregate> aggregations) {
+        return PetSearchFacets.builder()
+                .species(termBuckets(aggregations.get(SPECIES)))
+                .petSize(termBuckets(aggregations.get(PET_SIZE)))
+                .age(bucketsOf(aggregations.get(AGE)).histogram().buckets().array().stream()
+                        .map(b -> new PetFacetBucket(String.valueOf((long) b.key()), b.docCount()))
+                        .toList())
+                .distance(aggregations.containsKey(DISTANCE)
+                        ? bucketsOf(aggregations.get(DISTANCE)).geoDistance().buckets().array().stream()
+                                .map(b -> new PetFacetBucket(b.key(), b.docCount()))
+                                .toList()
+                        : List.of())
+                .build();
+    }
+
+    private static Aggregation excludingOwnFilter(String facet, Map<String, Query> filters, Aggregation buckets) {
+        List<Query> others = filters.entrySet().stream()
+                .filter(e -> !e.getKey().equals(facet))
+                .map(Map.Entry::getValue)
+                .toList();
+        return Aggregation.of(a -> a
+                .filter(allOf(others))
+                .aggregations(BUCKETS, buckets));
+    }
+
+    private static Query allOf(Collection<Query> queries) {
+        if (queries.isEmpty()) {
+            return Query.of(q -> q.matchAll(m -> m));
+        }
+        return Query.of(q -> q.bool(b -> b.filter(List.copyOf(queries))));
+    }
+
+    private static List<AggregationRange> distanceRanges() {
+        List<AggregationRange> ranges = new ArrayList<>();
+        double from = 0;
+        for (double to : distanceBandsKm) {
+            double bandFrom = from;
+            ranges.add(AggregationRange.of(r -> r.key((long) bandFrom + "-" + (long) to + "km").from(bandFrom).to(to)));
+            from = to;
+        }
+        double last = from;
+        ranges.add(AggregationRange.of(r -> r.key((long) last + "km+").from(last)));
+        return ranges;
+    }
+
+    private static List<PetFacetBucket> termBuckets(Aggregate aggregate) {
+        return bucketsOf(aggregate).sterms().buckets().array().stream()
+                .map(b -> new PetFacetBucket(b.key().stringValue(), b.docCount()))
+                .toList();
+    }
+
+    private static Aggregate bucketsOf(Aggregate facet) {
+        return facet.filter().aggregations().get(BUCKETS);
+    }
+
+    private static boolean hasLocation(PetSearchRequest r) {
+        return r.getLocation() != null && r.getLocation().getLat() != null && r.getLocation().getLon() != null;
+    }
+
+}
@@ -1,23 +1,40 @@
 package com.devtiro.pets.services.impl;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.DistanceUnit;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.GeoDistanceSort;
 import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.MsearchResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.elasticsearch.core.search.TotalHits;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
 import co.elastic.clients.json.JsonData;
+import com.devtiro.pets.domain.dto.HitCountMode;
+import com.devtiro.pets.domain.dto.PetBatchSearchQuery;
+import com.devtiro.pets.domain.dto.PetBatchSearchResult;
 import com.devtiro.pets.domain.dto.PetDto;
+import com.devtiro.pets.domain.dto.PetFacetedSearchResponse;
+import com.devtiro.pets.domain.dto.PetSearchCursorResponse;
 import com.devtiro.pets.domain.dto.PetSearchRequest;
+import com.devtiro.pets.domain.dto.PetSliceResponse;
+import com.devtiro.pets.domain.dto.PetSummaryDto;
 import com.devtiro.pets.domain.entity.Pet;
 import com.devtiro.pets.domain.entity.PetStatus;
+import com.devtiro.pets.exceptions.SearchTimeoutException;
 import com.devtiro.pets.mappers.PetMapper;
 import com.devtiro.pets.services.PetSearchService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -25,8 +42,13 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service("native")
@@ -35,10 +57,139 @@ public class PetSearchNativeElasticClientService implements PetSearchService {
 
     private final PetMapper petMapper;
     private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+    private final SearchCursorCodec searchCursorCodec;
     private static final String petIndex = "pets";
+    private static final String pitKeepAlive = "1m";
+
+    @Value("${search.async.timeout:5s}")
+    private Duration asyncTimeout;
 
     @Override
     public Page<PetDto> searchPets(PetSearchRequest request, Pageable pageable) {
+        try {
+            SearchResponse<Pet> response = elasticsearchClient.search(buildSearchRequest(request, pageable), Pet.class);
+            return toPage(response, request, pageable);
+
+        } catch (IOException e) {
+            log.error("Elasticsearch search failed", e);
+            throw new RuntimeException("Error searching pets", e);
+        }
+    }
+
+    @Override
+    public PetSliceResponse searchPetsSlice(PetSearchRequest request, Pageable pageable, HitCountMode mode, int cap) {
+        Integer trackTotalHitsUpTo = mode.trackTotalHitsUpTo(pageable, cap);
+        SearchRequest searchRequest = searchRequestBuilder(request, pageable)
+                .trackTotalHits(t -> trackTotalHitsUpTo == null ? t.enabled(true) : t.count(trackTotalHitsUpTo))
+                .build();
+        try {
+            SearchResponse<Pet> response = elasticsearchClient.search(searchRequest, Pet.class);
+
+            List<PetDto> petDtos = response.hits().hits().stream()
+                    .map(hit -> mapHitToDto(hit, request, 0))
+                    .toList();
+
+            TotalHits total = response.hits().total();
+            return PetSliceResponse.of(petDtos, pageable, mode,
+                    total != null ? total.value() : 0,
+                    total != null && total.relation() == TotalHitsRelation.Gte);
+
+        } catch (IOException e) {
+            log.error("Elasticsearch search failed", e);
+            throw new RuntimeException("Error searching pets", e);
+        }
+    }
+
+    @Override
+    public Page<PetSummaryDto> searchPetSummaries(PetSearchRequest request, Pageable pageable) {
+        SearchRequest searchRequest = searchRequestBuilder(request, pageable)
+                .source(s -> s.filter(f -> f.includes(PetSummaryDto.SOURCE_FIELDS)))
+                .build();
+        try {
+            // Decoded straight into the summary, the full Pet is never built
+            SearchResponse<PetSummaryDto> response = elasticsearchClient.search(searchRequest, PetSummaryDto.class);
+
+            List<PetSummaryDto> summaries = response.hits().hits().stream()
+                    .map(hit -> {
+                        PetSummaryDto summary = hit.source();
+                        summary.setId(hit.id());
+                        summary.setDistance(distanceOf(hit, request, 0));
+                        return summary;
+                    })
+                    .toList();
+
+            long totalHits = response.hits().total() != null ? response.hits().total().value() : 0;
+            return new PageImpl<>(summaries, pageable, totalHits);
+
+        } catch (IOException e) {
+            log.error("Elasticsearch summary search failed", e);
+            throw new RuntimeException("Error searching pets", e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Page<PetDto>> searchPetsAsync(PetSearchRequest request, Pageable pageable) {
+        CompletableFuture<SearchResponse<Pet>> call =
+                elasticsearchAsyncClient.search(buildSearchRequest(request, pageable), Pet.class);
+
+        CompletableFuture<Page<PetDto>> page = call.thenApply(response -> toPage(response, request, pageable));
+
+        // Fail instead of waiting on a slow cluster, and abort the HTTP request once nobody waits for it
+        CompletableFuture.delayedExecutor(asyncTimeout.toMillis(), TimeUnit.MILLISECONDS).execute(() ->
+                page.completeExceptionally(new SearchTimeoutException("Pet search timed out after " + asyncTimeout)));
+        page.whenComplete((result, failure) -> {
+            if (failure != null) {
+                call.cancel(true);
+            }
+        });
+        return page;
+    }
+
+    @Override
+    public List<PetBatchSearchResult> searchPetsBatch(List<PetBatchSearchQuery> queries) {
+        List<Pageable> pageables = queries.stream().map(PetBatchSearchQuery::toPageable).toList();
+
+        // Every query is compiled exactly like a single search, then sent as one body of the _msearch
+        MsearchRequest.Builder msearchBuilder = new MsearchRequest.Builder().index(petIndex);
+        for (int i = 0; i < queries.size(); i++) {
+            SearchRequest search = buildSearchRequest(queries.get(i).getFilter(), pageables.get(i));
+            msearchBuilder.searches(item -> item
+                    .header(h -> h)
+                    .body(b -> b
+                            .query(search.query())
+                            .from(search.from())
+                            .size(search.size())
+                            .sort(search.sort())));
+        }
+
+        try {
+            MsearchResponse<Pet> response = elasticsearchClient.msearch(msearchBuilder.build(), Pet.class);
+
+            List<PetBatchSearchResult> results = new ArrayList<>();
+            for (int i = 0; i < queries.size(); i++) {
+                MultiSearchResponseItem<Pet> item = response.responses().get(i);
+                if (item.isResult()) {
+                    results.add(PetBatchSearchResult.of(i, toPage(item.result(), queries.get(i).getFilter(), pageables.get(i))));
+                } else {
+                    log.warn("Batch search query {} failed: {}", i, item.failure().error().reason());
+                    results.add(PetBatchSearchResult.failed(i, Objects.requireNonNullElse(
+                            item.failure().error().reason(), item.failure().error().type())));
+                }
+            }
+            return results;
+
+        } catch (IOException e) {
+            log.error("Elasticsearch multi search failed", e);
+            throw new RuntimeException("Error searching pets", e);
+        }
+    }
+
+    private SearchRequest buildSearchRequest(PetSearchRequest request, Pageable pageable) {
+        return searchRequestBuilder(request, pageable).build();
+    }
+
+    private SearchRequest.Builder searchRequestBuilder(PetSearchRequest request, Pageable pageable) {
         // Build the base request
         SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder()
                 .index(petIndex)
@@ -49,24 +200,139 @@ public class PetSearchNativeElasticClientService implements PetSearchService {
         searchRequestBuilder.query(q -> q.bool(buildBoolQuery(request).build()));
 
         // Apply Sorting & Ensure Distance Calculation
-        applySorting(searchRequestBuilder, request, pageable);
+        applySorting(searchRequestBuilder, request, pageable.getSort());
+
+        return searchRequestBuilder;
+    }
+
+    private Page<PetDto> toPage(ResponseBody<Pet> response, PetSearchRequest request, Pageable pageable) {
+        List<PetDto> petDtos = response.hits().hits().stream()
+                .map(hit -> mapHitToDto(hit, request, 0))
+                .toList();
+
+        long totalHits = response.hits().total() != null ? response.hits().total().value() : 0;
+        return new PageImpl<>(petDtos, pageable, totalHits);
+    }
+
+    @Override
+    public PetFacetedSearchResponse searchPetsWithFacets(PetSearchRequest request, Pageable pageable) {
+        SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder()
+                .index(petIndex)
+                .from((int) pageable.getOffset())
+                .size(pageable.getPageSize())
+                .query(PetSearchFacetQueries.availableOnly())
+                // Facet filters go into the post_filter so the aggregations also see the pets they exclude
+                .postFilter(PetSearchFacetQueries.postFilter(request))
+                .aggregations(PetSearchFacetQueries.aggregations(request));
+
+        applySorting(searchRequestBuilder, request, pageable.getSort());
 
         try {
             SearchResponse<Pet> response = elasticsearchClient.search(searchRequestBuilder.build(), Pet.class);
 
             List<PetDto> petDtos = response.hits().hits().stream()
-                    .map(hit -> mapHitToDto(hit, request))
+                    .map(hit -> mapHitToDto(hit, request, 0))
                     .toList();
 
             long totalHits = response.hits().total() != null ? response.hits().total().value() : 0;
-            return new PageImpl<>(petDtos, pageable, totalHits);
+            return PetFacetedSearchResponse.builder()
+                    .pets(petDtos)
+                    .page(pageable.getPageNumber())
+                    .size(pageable.getPageSize())
+                    .totalElements(totalHits)
+                    .totalPages((int) Math.ceil((double) totalHits / pageable.getPageSize()))
+                    .facets(PetSearchFacetQueries.toFacets(response.aggregations()))
+                    .build();
 
         } catch (IOException e) {
-            log.error("Elasticsearch search failed", e);
+            log.error("Elasticsearch faceted search failed", e);
+            throw new RuntimeException("Error searching pets", e);
+        }
+    }
+
+    @Override
+    public PetSearchCursorResponse searchPetsWithCursor(PetSearchRequest request, String cursor, int size, Sort sort) {
+        SearchCursorCodec.SearchCursor previous = cursor != null ? searchCursorCodec.decode(cursor) : null;
+        // The sort must stay the same for every page, otherwise the search_after values are meaningless
+        Sort cursorSort = previous != null ? previous.sort() : sort;
+
+        try {
+            String pitId = previous != null ? previous.pitId() : openPointInTime();
+
+            // A PIT search must not name the index, and counting hits is pointless when scrolling
+            SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder()
+                    .pit(p -> p.id(pitId).keepAlive(k -> k.time(pitKeepAlive)))
+                    .size(size + 1)
+                    .trackTotalHits(t -> t.enabled(false));
+
+            searchRequestBuilder.query(q -> q.bool(buildBoolQuery(request).build()));
+            applySorting(searchRequestBuilder, request, cursorSort);
+            // Explicit tie-breaker so every hit has a unique, resumable position in the snapshot
+            searchRequestBuilder.sort(s -> s.field(f -> f.field("_shard_doc").order(SortOrder.Asc)));
+
+            if (previous != null) {
+                searchRequestBuilder.searchAfter(previous.searchAfter().stream()
+                        .map(PetSearchNativeElasticClientService::toFieldValue)
+                        .toList());
+            }
+
+            SearchResponse<Pet> response = elasticsearchClient.search(searchRequestBuilder.build(), Pet.class);
+
+            // One extra hit is requested only to find out whether another page exists
+            List<Hit<Pet>> hits = response.hits().hits();
+            boolean hasNext = hits.size() > size;
+            List<Hit<Pet>> pageHits = hasNext ? hits.subList(0, size) : hits;
+
+            List<PetDto> petDtos = pageHits.stream()
+                    .map(hit -> mapHitToDto(hit, request, 1))
+                    .toList();
+
+            String nextPitId = response.pitId() != null ? response.pitId() : pitId;
+            String nextCursor = null;
+            if (hasNext) {
+                List<Object> searchAfter = pageHits.getLast().sort().stream()
+                        .map(PetSearchNativeElasticClientService::toCursorValue)
+                        .toList();
+                nextCursor = searchCursorCodec.encode(nextPitId, searchAfter, cursorSort);
+            } else {
+                closePointInTime(nextPitId);
+            }
+
+            return PetSearchCursorResponse.builder()
+                    .pets(petDtos)
+                    .size(petDtos.size())
+                    .hasNext(hasNext)
+                    .nextCursor(nextCursor)
+                    .build();
+
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404) {
+                throw new IllegalArgumentException("Search cursor has expired, please restart the search");
+            }
+            log.error("Elasticsearch cursor search failed", e);
+            throw new RuntimeException("Error searching pets", e);
+        } catch (IOException e) {
+            log.error("Elasticsearch cursor search failed", e);
             throw new RuntimeException("Error searching pets", e);
         }
     }
 
+    private String openPointInTime() throws IOException {
+        return elasticsearchClient.openPointInTime(o -> o
+                .index(petIndex)
+                .keepAlive(k -> k.time(pitKeepAlive))
+        ).id();
+    }
+
+    private void closePointInTime(String pitId) {
+        try {
+            elasticsearchClient.closePointInTime(c -> c.id(pitId));
+        } catch (IOException | ElasticsearchException e) {
+            // Not fatal, the PIT expires on its own after the keep alive
+            log.warn("Could not close point in time: {}", e.getMessage());
+        }
+    }
+
     private BoolQuery.Builder buildBoolQuery(PetSearchRequest request) {
         BoolQuery.Builder bool = new BoolQuery.Builder();
 
@@ -102,15 +368,15 @@ public class PetSearchNativeElasticClientService implements PetSearchService {
         return bool;
     }
 
-    private void applySorting(SearchRequest.Builder builder, PetSearchRequest request, Pageable pageable) {
+    private void applySorting(SearchRequest.Builder builder, PetSearchRequest request, Sort sort) {
         // 1. Check if the user explicitly provided a distance/closest sort
-        Optional<Sort.Order> explicitGeoOrder = pageable.getSort().stream()
+        Optional<Sort.Order> explicitGeoOrder = sort.stream()
                 .filter(order -> order.getProperty().equalsIgnoreCase("distance")
                         || order.getProperty().equalsIgnoreCase("closest"))
                 .findFirst();
 
         // 2. Add all NON-geo sorts first
-        for (Sort.Order order : pageable.getSort()) {
+        for (Sort.Order order : sort) {
             String prop = order.getProperty();
             if (prop.equalsIgnoreCase("distance") || prop.equalsIgnoreCase("closest")) continue;
 
@@ -142,20 +408,53 @@ public class PetSearchNativeElasticClientService implements PetSearchService {
                 .build();
     }
 
-    private PetDto mapHitToDto(Hit<Pet> hit, PetSearchRequest request) {
+    /**
+     * @param tieBreakers number of sort values appended after the geo sort (e.g. _shard_doc in cursor mode)
+     */
+    private PetDto mapHitToDto(Hit<Pet> hit, PetSearchRequest request, int tieBreakers) {
         PetDto dto = petMapper.toPetDto(hit.source());
         if (hit.source() != null) dto.setId(hit.id());
 
-        if (hit.sort() != null && !hit.sort().isEmpty() && hasLocation(request)) {
-            // The distance is the LAST sort value because we added it last in applySorting
-            FieldValue distanceValue = hit.sort().getLast();
-            dto.setDistance(distanceValue.doubleValue());
+        Double distance = distanceOf(hit, request, tieBreakers);
+        if (distance != null) {
+            dto.setDistance(distance);
         }
         return dto;
     }
 
+    private Double distanceOf(Hit<?> hit, PetSearchRequest request, int tieBreakers) {
+        if (hit.sort() != null && hit.sort().size() > tieBreakers && hasLocation(request)) {
+            // The distance is the LAST sort value we added in applySorting, only tie-breakers follow it
+            FieldValue distanceValue = hit.sort().get(hit.sort().size() - 1 - tieBreakers);
+            return distanceValue.doubleValue();
+        }
+        return null;
+    }
+
     private boolean hasLocation(PetSearchRequest r) {
         return r.getLocation() != null && r.getLocation().getLat() != null && r.getLocation().getLon() != null;
     }
 
+    private static Object toCursorValue(FieldValue value) {
+        return switch (value._kind()) {
+            case Long -> value.longValue();
+            case Double -> value.doubleValue();
+            case Boolean -> value.booleanValue();
+            case String -> value.stringValue();
+            case Null -> null;
+            default -> String.valueOf(value._get());
+        };
+    }
+
+    private static FieldValue toFieldValue(Object value) {
+        return switch (value) {
+            case null -> FieldValue.NULL;
+            case Double d -> FieldValue.of(d);
+            case Float f -> FieldValue.of(f.doubleValue());
+            case Number n -> FieldValue.of(n.longValue());
+            case Boolean b -> FieldValue.of(b);
+            default -> FieldValue.of(value.toString());
+        };
+    }
+
 }
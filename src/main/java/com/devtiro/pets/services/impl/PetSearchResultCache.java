@@ -0,0 +1,198 @@
+package com.devtiro.pets.services.impl;
+
+import com.devtiro.pets.domain.dto.GeoPointDto;
+import com.devtiro.pets.domain.dto.PetDto;
+import com.devtiro.pets.domain.dto.PetFacetedSearchResponse;
+import com.devtiro.pets.domain.dto.PetSearchRequest;
+import com.devtiro.pets.domain.dto.PetSummaryDto;
+import com.devtiro.pets.domain.entity.PetSize;
+import com.devtiro.pets.domain.entity.Species;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Result cache for pet searches, backed by the "petSearches" Caffeine cache.
+ * Requests are canonicalized before lookup: the search location is snapped to a grid
+ * (search.cache.grid-size degrees) so nearby requests share one entry, and the search
+ * itself runs with the snapped location so the cached page is exact for its key.
+ * Pet writes evict the entries of the affected species, plus all species-agnostic and faceted entries.
+ * A search still running during an eviction is not cached, since the eviction could not see its entry.
+ */
+@Slf4j
+@Component
+public class PetSearchResultCache {
+
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> cache;
+    private final boolean enabled;
+    private final double gridSize;
+    private final Counter invalidations;
+    // Incremented by every eviction, a search that saw it change while running drops its entry
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PetSearchResultCache(CacheManager cacheManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${search.cache.enabled:true}") boolean enabled,
+                                @Value("${search.cache.grid-size:0.01}") double gridSize) {
+        this.cache = ((CaffeineCache) Objects.requireNonNull(cacheManager.getCache("petSearches"))).getNativeCache();
+        this.enabled = enabled;
+        this.gridSize = gridSize;
+        this.invalidations = Counter.builder("pets.search.cache.invalidations")
+                .description("Search cache entries removed because a pet was written")
+                .register(meterRegistry);
+    }
+
+    // The same search is cached separately for every response shape
+    enum ResultView { PAGE, FACETED, SUMMARY }
+
+    record SearchKey(Species species, PetSize petSize, Integer minAge, Integer maxAge,
+                     Long latCell, Long lonCell, Double distance,
+                     int page, int size, Sort sort, ResultView view) {
+
+        // The species facet counts every species, so a faceted entry is affected by any pet write
+        boolean affectedBy(Set<Species> changed) {
+            return species == null || view == ResultView.FACETED || changed.contains(species);
+        }
+    }
+
+    public Page<PetDto> get(PetSearchRequest request, Pageable pageable,
+                            BiFunction<PetSearchRequest, Pageable, Page<PetDto>> search) {
+        return lookup(request, pageable, ResultView.PAGE, search);
+    }
+
+    /**
+     * Async lookup, a miss starts the search and caches the page once it completes successfully
+     */
+    public CompletableFuture<Page<PetDto>> getAsync(PetSearchRequest request, Pageable pageable,
+                                                    BiFunction<PetSearchRequest, Pageable, CompletableFuture<Page<PetDto>>> search) {
+        if (!enabled) {
+            return search.apply(request, pageable);
+        }
+        PetSearchRequest normalized = normalize(request);
+        SearchKey key = toKey(normalized, pageable, ResultView.PAGE);
+        if (cache.getIfPresent(key) instanceof Page<?> cached) {
+            @SuppressWarnings("unchecked")
+            Page<PetDto> page = (Page<PetDto>) cached;
+            return CompletableFuture.completedFuture(page);
+        }
+        long evictionsAtStart = evictions.get();
+        CompletableFuture<Page<PetDto>> future = search.apply(normalized, pageable);
+        future.thenAccept(page -> {
+            cache.put(key, page);
+            discardIfEvicted(key, evictionsAtStart);
+        });
+        return future;
+    }
+
+    /**
+     * Faceted searches are cached separately, their entries also hold the facet counts
+     */
+    public PetFacetedSearchResponse getFaceted(PetSearchRequest request, Pageable pageable,
+                                               BiFunction<PetSearchRequest, Pageable, PetFacetedSearchResponse> search) {
+        return lookup(request, pageable, ResultView.FACETED, search);
+    }
+
+    public Page<PetSummaryDto> getSummaries(PetSearchRequest request, Pageable pageable,
+                                            BiFunction<PetSearchRequest, Pageable, Page<PetSummaryDto>> search) {
+        return lookup(request, pageable, ResultView.SUMMARY, search);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T lookup(PetSearchRequest request, Pageable pageable, ResultView view,
+                         BiFunction<PetSearchRequest, Pageable, T> search) {
+        if (!enabled) {
+            return search.apply(request, pageable);
+        }
+        PetSearchRequest normalized = normalize(request);
+        SearchKey key = toKey(normalized, pageable, view);
+        long evictionsAtStart = evictions.get();
+        T result = (T) cache.get(key, k -> search.apply(normalized, pageable));
+        discardIfEvicted(key, evictionsAtStart);
+        return result;
+    }
+
+    /**
+     * Drop an entry written by a search that overlapped an eviction, the result may predate the write.
+     * Checked after the put, so an eviction either sees the entry or has already changed the count.
+     */
+    private void discardIfEvicted(SearchKey key, long evictionsAtStart) {
+        if (evictions.get() != evictionsAtStart) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Evict every cached search that could contain a pet of the given species.
+     * Searches without a species filter and faceted searches are always evicted.
+     */
+    public void evictSpecies(Species... species) {
+        if (!enabled) {
+            return;
+        }
+        evictions.incrementAndGet();
+        Set<Species> changed = EnumSet.noneOf(Species.class);
+        Arrays.stream(species).filter(Objects::nonNull).forEach(changed::add);
+
+        int evicted = 0;
+        for (Object key : cache.asMap().keySet()) {
+            if (key instanceof SearchKey searchKey && searchKey.affectedBy(changed)) {
+                cache.invalidate(key);
+                evicted++;
+            }
+        }
+        invalidations.increment(evicted);
+        log.debug("Evicted {} cached pet searches for species {}", evicted, changed);
+    }
+
+    private PetSearchRequest normalize(PetSearchRequest request) {
+        GeoPointDto location = request.getLocation();
+        GeoPointDto snapped = null;
+        if (location != null && location.getLat() != null && location.getLon() != null) {
+            snapped = GeoPointDto.builder()
+                    .lat(Math.round(location.getLat() / gridSize) * gridSize)
+                    .lon(Math.round(location.getLon() / gridSize) * gridSize)
+                    .build();
+        }
+        return PetSearchRequest.builder()
+                .species(request.getSpecies())
+                .petSize(request.getPetSize())
+                .minAge(request.getMinAge())
+                .maxAge(request.getMaxAge())
+                .location(snapped)
+                .distance(request.getDistance())
+                .build();
+    }
+
+    private SearchKey toKey(PetSearchRequest normalized, Pageable pageable, ResultView view) {
+        GeoPointDto location = normalized.getLocation();
+        return new SearchKey(
+                normalized.getSpecies(),
+                normalized.getPetSize(),
+                normalized.getMinAge(),
+                normalized.getMaxAge(),
+                location != null ? Math.round(location.getLat() / gridSize) : null,
+                location != null ? Math.round(location.getLon() / gridSize) : null,
+                normalized.getDistance(),
+                pageable.getPageNumber(),
+                pageable.getPageSize(),
+                pageable.getSort(),
+                view
+        );
+    }
+
+}
@@ -1,23 +1,40 @@
 package com.devtiro.pets.services.impl;
 
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import com.devtiro.pets.domain.dto.*;
 import com.devtiro.pets.domain.entity.Pet;
 import com.devtiro.pets.domain.entity.PetStatus;
+import com.devtiro.pets.domain.entity.Species;
 import com.devtiro.pets.domain.entity.User;
 import com.devtiro.pets.exceptions.PetNotFoundException;
 import com.devtiro.pets.exceptions.UnauthorizedException;
+import com.devtiro.pets.exceptions.UserNotFoundException;
 import com.devtiro.pets.mappers.PetMapper;
 import com.devtiro.pets.repositories.PetRepository;
+import com.devtiro.pets.repositories.UserRepository;
+import com.devtiro.pets.security.AuthenticatedUser;
 import com.devtiro.pets.services.PetSearchService;
 import com.devtiro.pets.services.PetService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.retry.RetryTemplate;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
 import org.springframework.stereotype.Service;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Slf4j
@@ -25,9 +42,19 @@ import java.util.List;
 public class PetServiceImpl implements PetService {
 
     private final PetRepository petRepository;
+    private final UserRepository userRepository;
     private final PetMapper petMapper;
     @Qualifier("native")
     private final PetSearchService petSearchService;
+    private final PetSearchResultCache petSearchResultCache;
+    private final SingleFlight singleFlight;
+    private final PetDetailCache petDetailCache;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ConditionalUpdater conditionalUpdater;
+    private final RetryTemplate optimisticLockRetryTemplate;
+
+    @Value("${search.total-hits.cap:10000}")
+    private int totalHitsCap;
 
     @Override
     public Page<PetDto> getAllPets(Pageable pageable) {
@@ -35,9 +62,19 @@ public class PetServiceImpl implements PetService {
         return pets.map(petMapper::toPetDto);
     }
 
+    @Override
+    public Page<PetSummaryDto> getAllPetSummaries(Pageable pageable) {
+        return findSummaries(Query.of(q -> q.matchAll(m -> m)), pageable);
+    }
+
+    @Override
+    public PetSliceResponse getAllPetsSlice(Pageable pageable, HitCountMode mode) {
+        return findSlice(Query.of(q -> q.matchAll(m -> m)), pageable, mode);
+    }
+
     @Override
     public PetDto getAvailablePetById(String petId) {
-        Pet pet = petRepository.findById(petId)
+        Pet pet = petDetailCache.findById(petId)
                 .orElseThrow(() -> new PetNotFoundException("Pet not found with id: " + petId));
         if (!pet.getStatus().equals(PetStatus.AVAILABLE)) {
             throw new UnauthorizedException("You are not allowed to see this Pet");
@@ -52,38 +89,111 @@ public class PetServiceImpl implements PetService {
     }
 
     @Override
-    public PetDto createPet(PetCreateRequest request, User staff) {
+    public Page<PetSummaryDto> getAllAvailablePetSummaries(Pageable pageable) {
+        return findSummaries(Query.of(q -> q.term(t -> t.field("status").value(PetStatus.AVAILABLE.name()))), pageable);
+    }
+
+    @Override
+    public PetSliceResponse getAllAvailablePetsSlice(Pageable pageable, HitCountMode mode) {
+        return findSlice(Query.of(q -> q.term(t -> t.field("status").value(PetStatus.AVAILABLE.name()))), pageable, mode);
+    }
+
+    /**
+     * List query that only counts as many hits as the mode requires
+     */
+    private PetSliceResponse findSlice(Query filter, Pageable pageable, HitCountMode mode) {
+        Integer trackTotalHitsUpTo = mode.trackTotalHitsUpTo(pageable, totalHitsCap);
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(filter)
+                .withPageable(pageable)
+                .withTrackTotalHits(trackTotalHitsUpTo == null ? true : null)
+                .withTrackTotalHitsUpTo(trackTotalHitsUpTo)
+                .build();
+
+        SearchHits<Pet> searchHits = elasticsearchOperations.search(query, Pet.class);
+
+        List<PetDto> petDtos = searchHits.getSearchHits().stream()
+                .map(hit -> petMapper.toPetDto(hit.getContent()))
+                .toList();
+        return PetSliceResponse.of(petDtos, pageable, mode, searchHits.getTotalHits(),
+                searchHits.getTotalHitsRelation() == TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO);
+    }
+
+    /**
+     * List query that fetches only the card fields of _source and reads them into the summary
+     */
+    private Page<PetSummaryDto> findSummaries(Query filter, Pageable pageable) {
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(filter)
+                .withSourceFilter(new FetchSourceFilter(true, PetSummaryDto.SOURCE_FIELDS.toArray(String[]::new), null))
+                .withPageable(pageable)
+                .build();
+
+        SearchHits<PetSummaryDto> searchHits =
+                elasticsearchOperations.search(query, PetSummaryDto.class, IndexCoordinates.of("pets"));
+
+        List<PetSummaryDto> summaries = searchHits.getSearchHits().stream()
+                .map(hit -> {
+                    PetSummaryDto summary = hit.getContent();
+                    summary.setId(hit.getId());
+                    return summary;
+                })
+                .toList();
+        return new PageImpl<>(summaries, pageable, searchHits.getTotalHits());
+    }
+
+    @Override
+    public PetDto createPet(PetCreateRequest request, AuthenticatedUser staff) {
 
-        Pet pet = petMapper.toPet(request, staff);
+        // Staff name and email are stored on the pet, this is the only place the full user is needed
+        User staffUser = userRepository.findById(staff.getId())
+                .orElseThrow(() -> new UserNotFoundException("User not found with id: " + staff.getId()));
+
+        Pet pet = petMapper.toPet(request, staffUser);
         pet.setStatus(PetStatus.AVAILABLE);
 
         Pet savedPet = petRepository.save(pet);
+        petDetailCache.put(savedPet);
+        petSearchResultCache.evictSpecies(savedPet.getSpecies());
         return petMapper.toPetDto(savedPet);
     }
 
     @Override
     public PetDto updatePet(String petId, PetUpdateRequest request) {
-        Pet existingPet = petRepository.findById(petId)
-                .orElseThrow(() -> new PetNotFoundException("Pet not found with id: " + petId));
+        // The save is conditional on the _seq_no/_primary_term read here, on a conflict the update is applied again
+        return optimisticLockRetryTemplate.invoke(() -> {
+            Pet existingPet = petRepository.findById(petId)
+                    .orElseThrow(() -> new PetNotFoundException("Pet not found with id: " + petId));
 
-        petMapper.updatePet(existingPet, request);
-        Pet updatedPet = petRepository.save(existingPet);
+            Species previousSpecies = existingPet.getSpecies();
+            petMapper.updatePet(existingPet, request);
+            Pet updatedPet = petRepository.save(existingPet);
+            petDetailCache.put(updatedPet);
+            petSearchResultCache.evictSpecies(previousSpecies, updatedPet.getSpecies());
 
-        return petMapper.toPetDto(updatedPet);
+            return petMapper.toPetDto(updatedPet);
+        });
     }
 
     @Override
     public PetDto updatePetStatus(String petId, PetStatusUpdateRequest request) {
-        Pet existingPet = petRepository.findById(petId)
+        Pet changes = new Pet();
+        changes.setStatus(request.getStatus());
+
+        // One scripted update instead of get and reindex, a no-op when the pet already has the status
+        ConditionalUpdater.Outcome<Pet> outcome = conditionalUpdater.update(Pet.class, petId)
+                .require("status", EnumSet.complementOf(EnumSet.of(request.getStatus())))
+                .set(changes)
+                .execute()
                 .orElseThrow(() -> new PetNotFoundException("Pet not found with id: " + petId));
 
-        if (existingPet.getStatus().equals(request.getStatus())) {
+        if (!outcome.applied()) {
             throw new IllegalArgumentException("Pet is already in this status: " + request.getStatus());
         }
 
-        existingPet.setStatus(request.getStatus());
-
-        Pet updatedPet = petRepository.save(existingPet);
+        Pet updatedPet = outcome.document();
+        petDetailCache.put(updatedPet);
+        petSearchResultCache.evictSpecies(updatedPet.getSpecies());
         log.info("Pet status updated to: {}", updatedPet.getStatus());
         return petMapper.toPetDto(updatedPet);
     }
@@ -94,13 +204,52 @@ public class PetServiceImpl implements PetService {
                 .orElseThrow(() -> new PetNotFoundException("Pet not found with id: " + petId));
 
         petRepository.delete(existingPet);
+        petDetailCache.evictDeleted(petId);
+        petSearchResultCache.evictSpecies(existingPet.getSpecies());
 
         log.info("Pet deleted with id: {}", petId);
     }
 
     @Override
     public Page<PetDto> searchPets(PetSearchRequest request, Pageable pageable) {
-        return petSearchService.searchPets(request, pageable);
+        return petSearchResultCache.get(request, pageable, (r, p) ->
+                singleFlight.execute("petSearch", List.of(r, p), () -> petSearchService.searchPets(r, p)));
+    }
+
+    @Override
+    public PetSliceResponse searchPetsSlice(PetSearchRequest request, Pageable pageable, HitCountMode mode) {
+        return petSearchService.searchPetsSlice(request, pageable, mode, totalHitsCap);
+    }
+
+    @Override
+    public Page<PetSummaryDto> searchPetSummaries(PetSearchRequest request, Pageable pageable) {
+        return petSearchResultCache.getSummaries(request, pageable, petSearchService::searchPetSummaries);
+    }
+
+    @Override
+    public CompletableFuture<Page<PetDto>> searchPetsAsync(PetSearchRequest request, Pageable pageable) {
+        return petSearchResultCache.getAsync(request, pageable, (r, p) ->
+                singleFlight.executeAsync("petSearch", List.of(r, p), () -> petSearchService.searchPetsAsync(r, p)));
+    }
+
+    @Override
+    public PetBatchSearchResponse searchPetsBatch(PetBatchSearchRequest request) {
+        return PetBatchSearchResponse.builder()
+                .results(petSearchService.searchPetsBatch(request.getSearches()))
+                .build();
+    }
+
+    @Override
+    public PetSearchCursorResponse searchPetsWithCursor(PetSearchRequest request, String cursor, int size, Sort sort) {
+        if (size < 1 || size > 100) {
+            throw new IllegalArgumentException("Page size must be between 1 and 100");
+        }
+        return petSearchService.searchPetsWithCursor(request, cursor, size, sort);
+    }
+
+    @Override
+    public PetFacetedSearchResponse searchPetsWithFacets(PetSearchRequest request, Pageable pageable) {
+        return petSearchResultCache.getFaceted(request, pageable, petSearchService::searchPetsWithFacets);
     }
 
 
@@ -0,0 +1,74 @@
+package com.devtiro.pets.services.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes and decodes the opaque continuation token used by cursor based pet search.
+ * The token carries the point-in-time id, the sort values of the last hit and the sort
+ * that produced them, so the next page can resume with search_after on the same snapshot.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchCursorCodec {
+
+    private static final String PIT_ID = "pit";
+    private static final String SEARCH_AFTER = "after";
+    private static final String SORT = "sort";
+
+    private final ObjectMapper objectMapper;
+
+    public record SearchCursor(String pitId, List<Object> searchAfter, Sort sort) {
+    }
+
+    public String encode(String pitId, List<Object> searchAfter, Sort sort) {
+        List<String> orders = sort.stream()
+                .map(order -> order.getProperty() + "," + order.getDirection().name())
+                .toList();
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(Map.of(
+                    PIT_ID, pitId,
+                    SEARCH_AFTER, searchAfter,
+                    SORT, orders
+            ));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode search cursor", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public SearchCursor decode(String cursor) {
+        try {
+            Map<String, Object> values = objectMapper.readValue(
+                    Base64.getUrlDecoder().decode(cursor),
+                    new TypeReference<Map<String, Object>>() {}
+            );
+            String pitId = (String) values.get(PIT_ID);
+            List<Object> searchAfter = (List<Object>) values.get(SEARCH_AFTER);
+            List<String> orders = (List<String>) values.get(SORT);
+            if (pitId == null || searchAfter == null || orders == null) {
+                throw new IllegalArgumentException("Invalid search cursor");
+            }
+
+            Sort sort = Sort.by(orders.stream()
+                    .map(order -> {
+                        String[] parts = order.split(",");
+                        return new Sort.Order(Sort.Direction.fromString(parts[1]), parts[0]);
+                    })
+                    .toList());
+            return new SearchCursor(pitId, searchAfter, sort);
+        } catch (IOException | IllegalArgumentException | ClassCastException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid search cursor", e);
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.devtiro.pets.services.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Request coalescing: concurrent calls with an equal key share one in-flight call and its result.
+ * Nothing is kept after the call completes, so this sits below (or without) the result caches.
+ * Metrics: pets.singleflight.calls and pets.singleflight.coalesced, tagged by operation.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SingleFlight {
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<Object, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run the call, or wait for the identical call already in flight
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, Object key, Supplier<T> call) {
+        Object flightKey = new FlightKey(operation, key);
+        CompletableFuture<T> own = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(flightKey, own);
+        count(operation, existing != null);
+
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                // The leader's exception is rethrown as is, e.g. PetNotFoundException
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            T result = call.get();
+            own.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Errors and sneaky checked exceptions too, otherwise the followers would wait forever
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, own);
+        }
+    }
+
+    /**
+     * Async variant, followers get their own view of the shared future
+     * so one caller cancelling does not cancel the others
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(String operation, Object key, Supplier<CompletableFuture<T>> call) {
+        Object flightKey = new FlightKey(operation, key);
+        CompletableFuture<T> own = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(flightKey, own);
+        count(operation, existing != null);
+
+        if (existing != null) {
+            return existing.thenApply(Function.identity());
+        }
+
+        try {
+            call.get().whenComplete((result, failure) -> {
+                inFlight.remove(flightKey, own);
+                if (failure != null) {
+                    own.completeExceptionally(failure);
+                } else {
+                    own.complete(result);
+                }
+            });
+        } catch (Throwable e) {
+            inFlight.remove(flightKey, own);
+            own.completeExceptionally(e);
+        }
+        return own.thenApply(Function.identity());
+    }
+
+    private void count(String operation, boolean coalesced) {
+        meterRegistry.counter("pets.singleflight.calls", "operation", operation).increment();
+        if (coalesced) {
+            meterRegistry.counter("pets.singleflight.coalesced", "operation", operation).increment();
+            log.debug("Coalesced {} call with the one in flight", operation);
+        }
+    }
+
+    private record FlightKey(String operation, Object key) {
+    }
+
+}
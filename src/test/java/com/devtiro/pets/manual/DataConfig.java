@@ -15,9 +15,7 @@ import org.springframework.data.util.Streamable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.annotation.Rollback;
 
-import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -281,10 +279,6 @@ public class DataConfig {
                 "0:0:0:0:0:0:0:1"
         );
 
-        staff.setRefreshToken(registrationResponse.getRefreshToken());
-        LocalDateTime refreshExpiryInLocalDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(registrationResponse.getRefreshExpiresIn()), ZoneId.systemDefault());
-        staff.setRefreshTokenExpiryDate(refreshExpiryInLocalDateTime);
-
         User savedStaff = updateUser(staff);
 
         log.info("agent id: {}, email: {}, accesstoken: {}, refreshtoken: {}", savedStaff.getId(), savedStaff.getEmail(), registrationResponse.getAccessToken(), registrationResponse.getRefreshToken());
@@ -325,10 +319,6 @@ public class DataConfig {
                 "0:0:0:0:0:0:0:1"
         );
 
-        user.setRefreshToken(registrationResponse.getRefreshToken());
-        LocalDateTime refreshExpiryInLocalDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(registrationResponse.getRefreshExpiresIn()), ZoneId.systemDefault());
-        user.setRefreshTokenExpiryDate(refreshExpiryInLocalDateTime);
-
         User savedUser = updateUser(user);
 
         log.info("agent id: {}, email: {}, accesstoken: {}, refreshtoken: {}", savedUser.getId(), savedUser.getEmail(), registrationResponse.getAccessToken(), registrationResponse.getRefreshToken());
@@ -0,0 +1,85 @@
+package com.devtiro.pets.manual;
+
+import com.devtiro.pets.services.NotificationTemplates;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Manual render-time benchmark of the compiled notification templates against the
+ * String.format text block the submit confirmation used before. No Spring context needed.
+ * Run it on its own and compare the logged ns/op and bytes/op, e.g. after adding a notification type.
+ */
+@Slf4j
+public class NotificationTemplateBenchmark {
+
+    private static final int warmupIterations = 50_000;
+    private static final int measuredIterations = 200_000;
+
+    @Test
+    public void renderSubmitConfirmation() throws Exception {
+        NotificationTemplates templates = new NotificationTemplates(new SimpleMeterRegistry(), Locale.ENGLISH);
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("petName", "Buddy");
+        values.put("street", "123 Main St");
+        values.put("city", "Springfield");
+        values.put("state", "IL");
+        values.put("zipCode", "62701");
+        values.put("email", "bob@example.com");
+        values.put("phoneNumber", "+1-555-0100");
+        values.put("submittedAt", LocalDateTime.of(2026, 1, 15, 10, 30));
+
+        measure("compiled template", () -> templates.render("submit-confirmation", Locale.ENGLISH, values).text());
+        measure("String.format", () -> String.format(
+                """
+                        You have submitted your application with these personal information:
+
+                        Pet name: %s
+                        Your Address:
+                            street: %s
+                            city: %s
+                            state: %s
+                            zipCode: %s
+                        Your Email Address: %s
+                        Your Phone number: %s
+                        Submitted at: %s
+                        Please confirm your personal information is correct,
+                          and wait for the potential staffer to approve your application request
+                """,
+                values.get("petName"), values.get("street"), values.get("city"), values.get("state"),
+                values.get("zipCode"), values.get("email"), values.get("phoneNumber"),
+                DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM, FormatStyle.SHORT)
+                        .withLocale(Locale.ENGLISH)
+                        .format((LocalDateTime) values.get("submittedAt"))));
+    }
+
+    private static void measure(String name, Supplier<String> render) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long sink = 0;
+        for (int i = 0; i < warmupIterations; i++) {
+            sink += render.get().length();
+        }
+
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < measuredIterations; i++) {
+            sink += render.get().length();
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        log.info("{}: {} ns/op, {} bytes/op (checksum {})",
+                name, elapsed / measuredIterations, allocated / measuredIterations, sink);
+    }
+
+}